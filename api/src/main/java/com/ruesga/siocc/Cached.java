@@ -0,0 +1,40 @@
+package com.ruesga.siocc;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to declare a method as pure, so its results can be memoized by the container.
+ * <p>
+ * When an interface type is resolved and its implementation has {@link Cached} methods (annotated either in the
+ * interface or in the implementation class), the container returns a proxy that memoizes the results of those
+ * methods, keyed by their arguments, in a bounded concurrent cache. Other methods are delegated directly to
+ * the implementation.
+ * <pre>
+ * public interface TaxCalculator {
+ *     &#64;Cached(maximumSize = 256)
+ *     BigDecimal rateOf(String country);
+ * }
+ * </pre>
+ * Arguments are compared with {@link java.util.Arrays#deepEquals(Object[], Object[])}, so they must implement
+ * <code>equals</code> and <code>hashCode</code>. Array arguments are copied when a result is cached, other
+ * arguments are kept as passed, so they shouldn't be modified afterwards.
+ * <p>
+ * Results are cached per resolved instance: every instance of a prototype gets its own, initially empty, cache.
+ * Declare the implementation {@link javax.inject.Singleton} to share the cached results.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Cached {
+    /**
+     * The maximum number of memoized results of the method. When exceeded, the results are evicted in
+     * FIFO order: the first cached result is evicted first, regardless of how often it's used.
+     *
+     * @return the maximum number of memoized results.
+     */
+    int maximumSize() default 1024;
+}
@@ -0,0 +1,182 @@
+package com.ruesga.siocc;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A proxy that memoizes the results of the {@link Cached} methods of an instance. The caches belong to the
+ * proxied instance, so every proxy starts empty (e.g. the proxies of a prototype don't share their results).
+ */
+class CachingProxy implements InvocationHandler {
+    private static final Object NULL = new Object();
+    private static final Object[] NO_ARGS = {};
+
+    // The cached methods of every implementation class, by interface type
+    private static final ClassValue<ConcurrentMap<Class<?>, Map<Method, CachedMethod>>> cachedMethods =
+            new ClassValue<ConcurrentMap<Class<?>, Map<Method, CachedMethod>>>() {
+                @Override
+                protected ConcurrentMap<Class<?>, Map<Method, CachedMethod>> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private static class CachedMethod {
+        private final Method method;
+        private final int maximumSize;
+
+        private CachedMethod(Method method, int maximumSize) {
+            this.method = method;
+            this.maximumSize = maximumSize;
+        }
+    }
+
+    /**
+     * A bounded cache of the results of a method, keyed by its arguments. Results are evicted in FIFO order,
+     * the first cached first, regardless of how often they are used.
+     */
+    private static class MethodCache {
+        private final CachedMethod cachedMethod;
+        private final ConcurrentMap<Arguments, Object> results = new ConcurrentHashMap<>();
+        private final Queue<Arguments> order = new ConcurrentLinkedQueue<>();
+
+        private MethodCache(CachedMethod cachedMethod) {
+            this.cachedMethod = cachedMethod;
+        }
+    }
+
+    private static class Arguments {
+        private final Object[] args;
+        private final int hashCode;
+
+        private Arguments(Object[] args) {
+            this.args = args;
+            this.hashCode = Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Arguments && hashCode == ((Arguments) o).hashCode
+                    && Arrays.deepEquals(args, ((Arguments) o).args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private final Object target;
+    private final Map<Method, MethodCache> caches;
+
+    private CachingProxy(Object target, Map<Method, CachedMethod> methods) {
+        this.target = target;
+        this.caches = new HashMap<>(methods.size() * 2);
+        methods.forEach((method, cachedMethod) -> caches.put(method, new MethodCache(cachedMethod)));
+    }
+
+    /**
+     * Returns a proxy of the passed instance for the passed interface type if the instance has {@link Cached}
+     * methods, or the own instance otherwise.
+     */
+    static Object wrap(Class<?> type, Object target) {
+        if (!type.isInterface()) {
+            return target;
+        }
+        Class<?> impl = target.getClass();
+        Map<Method, CachedMethod> methods = cachedMethods.get(impl)
+                .computeIfAbsent(type, t -> findCachedMethods(t, impl));
+        if (methods.isEmpty()) {
+            return target;
+        }
+        return Proxy.newProxyInstance(impl.getClassLoader(), new Class<?>[]{type}, new CachingProxy(target, methods));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        MethodCache cache = caches.get(method);
+        if (cache == null) {
+            // Not cached. Just delegate to the instance
+            return invokeTarget(method, args);
+        }
+
+        Arguments key = new Arguments(args == null ? NO_ARGS : args);
+        Object result = cache.results.get(key);
+        if (result != null) {
+            return result == NULL ? null : result;
+        }
+        result = invokeTarget(cache.cachedMethod.method, args);
+        // Store a copy of the arguments, so the cached key doesn't change if the caller modifies its arrays
+        key = new Arguments((Object[]) copyOf(key.args));
+        if (cache.results.putIfAbsent(key, result == null ? NULL : result) == null) {
+            cache.order.add(key);
+            while (cache.results.size() > cache.cachedMethod.maximumSize) {
+                Arguments eldest = cache.order.poll();
+                if (eldest == null) {
+                    break;
+                }
+                cache.results.remove(eldest);
+            }
+        }
+        return result;
+    }
+
+    private static Object copyOf(Object value) {
+        if (value == null || !value.getClass().isArray()) {
+            return value;
+        }
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        if (value instanceof Object[]) {
+            for (int i = 0; i < length; i++) {
+                ((Object[]) copy)[i] = copyOf(((Object[]) value)[i]);
+            }
+        } else {
+            System.arraycopy(value, 0, copy, 0, length);
+        }
+        return copy;
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Map<Method, CachedMethod> findCachedMethods(Class<?> type, Class<?> impl) {
+        Map<Method, CachedMethod> methods = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            Cached cached = findCached(method, impl);
+            if (cached != null) {
+                // The proxy could not be able to access non-public interfaces
+                method.setAccessible(true);
+                methods.put(method, new CachedMethod(method, cached.maximumSize()));
+            }
+        }
+        return methods.isEmpty() ? Collections.emptyMap() : methods;
+    }
+
+    private static Cached findCached(Method method, Class<?> impl) {
+        Cached cached = method.getAnnotation(Cached.class);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            return impl.getMethod(method.getName(), method.getParameterTypes()).getAnnotation(Cached.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
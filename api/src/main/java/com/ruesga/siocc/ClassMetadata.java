@@ -0,0 +1,298 @@
+package com.ruesga.siocc;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * The immutable injection metadata of a class: its {@link javax.inject.Inject} annotated fields, its
+ * constructor, its supertypes, ...
+ * <p>
+ * Metadata is computed once per class and shared by every {@link IoC} container and
+ * {@link com.ruesga.siocc.resolvers.DependencyResolver} of the process, so the per-container state is limited
+ * to its bindings and instances. Metadata is held by a {@link ClassValue}, so it doesn't prevent classes
+ * (and their class loaders) from being unloaded.
+ * <pre>
+ *     Service service = ClassMetadata.of(ServiceImpl.class).newInstance();
+ * </pre>
+ */
+public final class ClassMetadata {
+    private static final ClassValue<ClassMetadata> metadata = new ClassValue<ClassMetadata>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final Constructor<?> constructor;
+    // A direct call to the constructor, when it's visible from this class
+    private final Supplier<?> factory;
+    private final List<Field> injectFields;
+    private final List<Key<?>> injectKeys;
+    // Direct setters of the inject fields, created on first use. Null elements fall back to reflection
+    private volatile MethodHandle[] injectSetters;
+    private final Annotation qualifier;
+    private final List<Method> preDestroyMethods;
+    private final Set<Class<?>> supertypes;
+    private final boolean singleton;
+    private final boolean resolutionScoped;
+
+    private ClassMetadata(Class<?> type) {
+        this.type = type;
+        this.constructor = findConstructor(type);
+        this.factory = createFactory(type, constructor);
+        this.injectFields = Collections.unmodifiableList(Arrays.stream(type.getDeclaredFields())
+                .filter(f -> f.getAnnotation(Inject.class) != null)
+                .peek(f -> f.setAccessible(true))
+                .collect(Collectors.toList()));
+        this.injectKeys = Collections.unmodifiableList(injectFields.stream()
+                .map(f -> Key.of(f.getType(), Key.qualifierOf(f.getAnnotations())))
+                .collect(Collectors.toList()));
+        this.qualifier = Key.qualifierOf(type.getAnnotations());
+        this.preDestroyMethods = Collections.unmodifiableList(findPreDestroyMethods(type));
+        this.supertypes = Collections.unmodifiableSet(findSupertypes(type, new LinkedHashSet<>()));
+        this.singleton = type.isAnnotationPresent(Singleton.class);
+        this.resolutionScoped = type.isAnnotationPresent(ResolutionScoped.class);
+    }
+
+    /**
+     * Returns the metadata of the passed class.
+     *
+     * @param type the class.
+     * @return the metadata of the class.
+     */
+    public static ClassMetadata of(Class<?> type) {
+        return metadata.get(type);
+    }
+
+    /**
+     * Returns the class described by this metadata.
+     *
+     * @return the class.
+     */
+    public Class<?> type() {
+        return type;
+    }
+
+    /**
+     * Creates a new instance of the class using its public empty constructor.
+     *
+     * @param <T> the class' type.
+     * @return a new instance.
+     * @throws ReflectiveOperationException if the class doesn't have a public empty constructor or the
+     *         instance couldn't be created.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T newInstance() throws ReflectiveOperationException {
+        if (factory != null) {
+            try {
+                return (T) factory.get();
+            } catch (RuntimeException e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+        if (constructor == null) {
+            throw new NoSuchMethodException(type.getName() + ".<init>()");
+        }
+        return (T) constructor.newInstance();
+    }
+
+    /**
+     * Returns the fields of the class annotated with {@link javax.inject.Inject}. Fields are already
+     * accessible.
+     *
+     * @return an unmodifiable list of fields.
+     */
+    public List<Field> injectFields() {
+        return injectFields;
+    }
+
+    /**
+     * Returns the binding keys of the {@link #injectFields()}: their types, qualified with their
+     * {@link javax.inject.Qualifier} annotation, if any.
+     *
+     * @return an unmodifiable list of keys, in the same order as the fields.
+     */
+    public List<Key<?>> injectKeys() {
+        return injectKeys;
+    }
+
+    /**
+     * Sets the value of an inject field of an instance of the class, through a method handle instead of a
+     * reflective call where possible.
+     *
+     * @param index the index of the field in {@link #injectFields()}.
+     * @param instance the instance.
+     * @param value the value of the field.
+     * @throws IllegalAccessException if the field isn't accessible.
+     */
+    void inject(int index, Object instance, Object value) throws IllegalAccessException {
+        MethodHandle[] setters = injectSetters;
+        if (setters == null) {
+            setters = createSetters(injectFields);
+            injectSetters = setters;
+        }
+        MethodHandle setter = setters[index];
+        if (setter == null) {
+            injectFields.get(index).set(instance, value);
+            return;
+        }
+        try {
+            setter.invokeExact(instance, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // Field setters don't throw checked exceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the {@link javax.inject.Qualifier} annotation of the class.
+     *
+     * @return the qualifier, or <code>null</code> if the class isn't qualified.
+     */
+    public Annotation qualifier() {
+        return qualifier;
+    }
+
+    /**
+     * Returns the methods of the class hierarchy annotated with {@link javax.annotation.PreDestroy}.
+     * Methods are already accessible.
+     *
+     * @return an unmodifiable list of methods.
+     */
+    public List<Method> preDestroyMethods() {
+        return preDestroyMethods;
+    }
+
+    /**
+     * Returns the class, all its superclasses and all the interfaces it implements.
+     *
+     * @return an unmodifiable set of types.
+     */
+    public Set<Class<?>> supertypes() {
+        return supertypes;
+    }
+
+    /**
+     * Returns if the class is annotated with {@link javax.inject.Singleton}.
+     *
+     * @return <code>true</code> if the class is a singleton.
+     */
+    public boolean isSingleton() {
+        return singleton;
+    }
+
+    /**
+     * Returns if the class is annotated with {@link ResolutionScoped}.
+     *
+     * @return <code>true</code> if the class is resolution scoped.
+     */
+    public boolean isResolutionScoped() {
+        return resolutionScoped;
+    }
+
+    private static Constructor<?> findConstructor(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = type.getConstructor();
+            if (Modifier.isPublic(type.getModifiers())) {
+                // Skip the access checks on every call
+                constructor.setAccessible(true);
+            }
+            return constructor;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static Supplier<?> createFactory(Class<?> type, Constructor<?> constructor) {
+        if (constructor == null || constructor.getExceptionTypes().length > 0 || !isVisible(type)) {
+            return null;
+        }
+        try {
+            // Spin a Supplier calling the constructor, which is way cheaper than a reflective call
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.findConstructor(type, MethodType.methodType(void.class));
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class), handle, MethodType.methodType(type));
+            return (Supplier<?>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle[] createSetters(List<Field> fields) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle[] setters = new MethodHandle[fields.size()];
+        for (int i = 0; i < setters.length; i++) {
+            try {
+                setters[i] = lookup.unreflectSetter(fields.get(i))
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException | RuntimeException e) {
+                // Not accessible. Use reflection, which reports it
+            }
+        }
+        return setters;
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        try {
+            // The spun class is defined by the class loader of this class
+            return Class.forName(type.getName(), false, ClassMetadata.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static List<Method> findPreDestroyMethods(Class<?> type) {
+        List<Method> methods = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(PreDestroy.class) && method.getParameterCount() == 0) {
+                    method.setAccessible(true);
+                    methods.add(method);
+                }
+            }
+        }
+        return methods;
+    }
+
+    private static Set<Class<?>> findSupertypes(Class<?> type, Set<Class<?>> supertypes) {
+        if (type != null && supertypes.add(type)) {
+            findSupertypes(type.getSuperclass(), supertypes);
+            for (Class<?> i : type.getInterfaces()) {
+                findSupertypes(i, supertypes);
+            }
+        }
+        return supertypes;
+    }
+}
@@ -1,5 +1,7 @@
 package com.ruesga.siocc;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * A configuration class for customize {@link IoC#resolve(Class)}'s behavior.
  * <p>
@@ -62,6 +64,94 @@ public class Configuration {
             return this;
         }
 
+        /**
+         * Configures the maximum number of threads used to dispose managed instances when the container
+         * is closed. Defaults to the number of available processors.
+         *
+         * @param parallelism the maximum number of threads.
+         * @return the own builder's reference.
+         * @see IoC#close()
+         */
+        public Builder disposeParallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("parallelism must be greater than 0");
+            }
+            this.configuration.disposeParallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Configures the maximum time to wait for managed instances to be disposed when the container
+         * is closed. Defaults to 30 seconds.
+         *
+         * @param timeout the maximum time to wait.
+         * @param unit the unit of the timeout.
+         * @return the own builder's reference.
+         * @see IoC#close()
+         */
+        public Builder disposeTimeout(long timeout, TimeUnit unit) {
+            this.configuration.disposeTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Configures the tracer used to record the spans of the resolutions. Tracing is disabled by default.
+         *
+         * @param tracer the tracer to use.
+         * @return the own builder's reference.
+         * @see Tracer
+         */
+        public Builder tracer(Tracer tracer) {
+            this.configuration.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * Configures the container to load and initialize, in background, the classes known by its resolvers
+         * (and the types of their injected fields) when it's created. Disabled by default.
+         *
+         * @param preload <code>true</code> to preload the classes.
+         * @return the own builder's reference.
+         * @see IoC#warmUp()
+         * @see com.ruesga.siocc.resolvers.DependencyResolver#knownTypes()
+         */
+        public Builder preload(boolean preload) {
+            this.configuration.preload = preload;
+            return this;
+        }
+
+        /**
+         * Configures the maximum number of threads used to preload classes. Defaults to the number of
+         * available processors.
+         *
+         * @param parallelism the maximum number of threads.
+         * @return the own builder's reference.
+         * @see #preload(boolean)
+         */
+        public Builder preloadParallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("parallelism must be greater than 0");
+            }
+            this.configuration.preloadParallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Configures the minimum number of instances for which {@link IoC#injectMembers(java.util.Collection)}
+         * splits the injection across the common {@link java.util.concurrent.ForkJoinPool}. Smaller batches are
+         * injected in the calling thread. Defaults to 10000.
+         *
+         * @param threshold the minimum number of instances injected in parallel.
+         * @return the own builder's reference.
+         */
+        public Builder parallelInjectionThreshold(int threshold) {
+            if (threshold <= 0) {
+                throw new IllegalArgumentException("threshold must be greater than 0");
+            }
+            this.configuration.parallelInjectionThreshold = threshold;
+            return this;
+        }
+
         /**
          * Creates and returns a new {@link Configuration} reference.
          *
@@ -75,6 +165,12 @@ public class Configuration {
     private NoDependencyFoundStrategy noDependencyFoundStrategy = NoDependencyFoundStrategy.NULL;
     private CircularDependencyStrategy circularDependencyStrategy = CircularDependencyStrategy.NULL;
     private NonAccessibleFieldStrategy nonAccessibleFieldStrategy = NonAccessibleFieldStrategy.NULL;
+    private int disposeParallelism = Runtime.getRuntime().availableProcessors();
+    private long disposeTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+    private Tracer tracer = Tracer.DISABLED;
+    private boolean preload;
+    private int preloadParallelism = Runtime.getRuntime().availableProcessors();
+    private int parallelInjectionThreshold = 10000;
 
     private Configuration() {
     }
@@ -90,4 +186,28 @@ public class Configuration {
     NonAccessibleFieldStrategy nonAccessibleFieldStrategy() {
         return this.nonAccessibleFieldStrategy;
     }
+
+    int disposeParallelism() {
+        return this.disposeParallelism;
+    }
+
+    long disposeTimeoutNanos() {
+        return this.disposeTimeoutNanos;
+    }
+
+    Tracer tracer() {
+        return this.tracer;
+    }
+
+    boolean preload() {
+        return this.preload;
+    }
+
+    int preloadParallelism() {
+        return this.preloadParallelism;
+    }
+
+    int parallelInjectionThreshold() {
+        return this.parallelInjectionThreshold;
+    }
 }
@@ -0,0 +1,142 @@
+package com.ruesga.siocc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Disposes {@link ManagedInstance}s in reverse dependency order: an instance is disposed only once every
+ * instance that depends on it was disposed. Independent instances are disposed in parallel. Managed instances
+ * are deduplicated by the identity of the object they manage (e.g. the same singleton resolved for several
+ * keys), so every object is disposed once.
+ */
+class Disposer {
+    private final static Logger logger = LoggerFactory.getLogger(Disposer.class);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    // The instances to dispose, one per managed object, and the number of instances depending on them
+    private final Map<ManagedInstance, AtomicInteger> dependents = new IdentityHashMap<>();
+    // The dependencies of every instance to dispose, among the instances to dispose
+    private final Map<ManagedInstance, Set<ManagedInstance>> dependencies = new IdentityHashMap<>();
+    private final CountDownLatch latch;
+    private final ExecutorService executor;
+
+    private Disposer(Collection<ManagedInstance> instances, int parallelism) {
+        Map<Object, ManagedInstance> byObject = new IdentityHashMap<>();
+        instances.forEach(i -> byObject.putIfAbsent(i.instance(), i));
+        byObject.values().forEach(i -> {
+            dependents.put(i, new AtomicInteger());
+            dependencies.put(i, Collections.newSetFromMap(new IdentityHashMap<>()));
+        });
+        // Only the dependencies being disposed too are waited for
+        instances.forEach(i -> {
+            ManagedInstance disposed = byObject.get(i.instance());
+            i.dependencies().forEach(d -> {
+                ManagedInstance dependency = byObject.get(d.instance());
+                if (dependency != null && dependency != disposed && dependencies.get(disposed).add(dependency)) {
+                    dependents.get(dependency).incrementAndGet();
+                }
+            });
+        });
+        this.latch = new CountDownLatch(dependents.size());
+        this.executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, dependents.size())), r -> {
+            Thread thread = new Thread(r, "siocc-disposer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Disposes the passed instances, waiting at most the passed time.
+     *
+     * @return <code>true</code> if every instance was disposed before the deadline.
+     */
+    static boolean dispose(Collection<ManagedInstance> instances, int parallelism, long timeout, TimeUnit unit) {
+        if (instances.isEmpty()) {
+            return true;
+        }
+        return new Disposer(instances, parallelism).dispose(timeout, unit);
+    }
+
+    private boolean dispose(long timeout, TimeUnit unit) {
+        try {
+            // Collect the roots before submitting any of them, as the running tasks submit the instances whose
+            // count drops to zero, and those must not be submitted twice
+            List<ManagedInstance> roots = new ArrayList<>();
+            dependents.forEach((instance, count) -> {
+                if (count.get() == 0) {
+                    roots.add(instance);
+                }
+            });
+            roots.forEach(this::submit);
+            if (!latch.await(timeout, unit)) {
+                logger.warn("{} managed instances were not disposed before the deadline", latch.getCount());
+                return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submit(ManagedInstance instance) {
+        try {
+            executor.execute(() -> {
+                dispose(instance);
+                latch.countDown();
+                dependencies.get(instance).forEach(d -> {
+                    if (dependents.get(d).decrementAndGet() == 0) {
+                        submit(d);
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            // The deadline expired. Just ignore the remaining instances
+        }
+    }
+
+    /**
+     * Disposes a single instance in the calling thread, ignoring its dependencies.
+     */
+    static void dispose(ManagedInstance managed) {
+        Object instance = managed.instance();
+        boolean closed = false;
+        for (Method method : managed.preDestroyMethods()) {
+            try {
+                method.invoke(instance);
+                closed |= method.getName().equals("close");
+            } catch (InvocationTargetException e) {
+                logger.warn("Failed to dispose instance of type '{}'", instance.getClass().getName(), e.getCause());
+            } catch (IllegalAccessException e) {
+                logger.warn("Can't access method '{}' of type '{}'",
+                        method.getName(), instance.getClass().getName(), e);
+            }
+        }
+        if (!closed && instance instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) instance).close();
+            } catch (Exception e) {
+                logger.warn("Failed to dispose instance of type '{}'", instance.getClass().getName(), e);
+            }
+        }
+    }
+}
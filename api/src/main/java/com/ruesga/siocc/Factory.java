@@ -0,0 +1,34 @@
+package com.ruesga.siocc;
+
+import com.ruesga.siocc.resolvers.DependencyResolutionException;
+
+/**
+ * A reusable and thread-safe handle to create instances of a type, returned by {@link IoC#factoryFor(Class)}.
+ * <p>
+ * The factory is bound to the compiled resolution plan of its type (the resolvers, implementation classes,
+ * injected fields and scopes of the graph), so creating an instance doesn't look up anything in the container.
+ * Implementation classes that their resolver just instantiates (see
+ * {@link com.ruesga.siocc.resolvers.DependencyResolver#implementationOf(Key)}) are created by the plan itself,
+ * calling their constructor directly and setting their fields through method handles.
+ * Hot paths can create the factory once and keep it:
+ * <pre>
+ *     private static final Factory&lt;Handler&gt; HANDLERS = container.factoryFor(Handler.class);
+ *
+ *     ...
+ *
+ *     Handler handler = HANDLERS.get();
+ * </pre>
+ *
+ * @param <T> the type.
+ */
+@FunctionalInterface
+public interface Factory<T> {
+    /**
+     * Returns an instance of the type, like {@link IoC#resolve(Class)} does.
+     *
+     * @return an instance of the resolved type or <code>null</code> if not resolved.
+     * @throws DependencyResolutionException if something when wrong trying to resolve the type.
+     * @throws IllegalStateException if the container was closed.
+     */
+    T get() throws DependencyResolutionException;
+}
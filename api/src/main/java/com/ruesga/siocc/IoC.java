@@ -3,17 +3,37 @@ package com.ruesga.siocc;
 import com.ruesga.siocc.resolvers.CircularDependencyDetectedException;
 import com.ruesga.siocc.resolvers.DependencyResolutionException;
 import com.ruesga.siocc.resolvers.DependencyResolver;
+import com.ruesga.siocc.resolvers.MembersInjector;
 import com.ruesga.siocc.resolvers.NoDependencyResolvedException;
 import com.ruesga.siocc.resolvers.NonAccessibleFieldException;
 
-import javax.inject.Inject;
 import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.Stack;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * A simple <b><i>Inversion of Control</i></b> dependency container.
@@ -52,13 +72,219 @@ import java.util.stream.Collectors;
  * public class Service2 {
  * }
  * </pre>
+ * <p>
+ * The resolvers of a live container can be replaced atomically by calling one of
+ * {@link #rebind(DependencyResolver...)} or {@link #rebind(Collection, DependencyResolver...)} methods.
+ * Resolutions in progress finish with the previous resolvers, while new resolutions see the new ones.
+ * <p>
+ * The container remembers the resolver that resolved every key and goes straight to it the next times. So a
+ * key stays pinned to its resolver until it's rebound: a resolver placed before it in the chain that only
+ * starts resolving the key afterwards isn't asked for it. Dynamic resolvers must call
+ * {@link #rebind(Collection, DependencyResolver...)} with the types they start resolving.
+ * <p>
+ * Implementation classes annotated with {@link javax.inject.Singleton} are instantiated once per container
+ * and resolved type. These singletons are managed by the container: when it is {@link #close() closed},
+ * {@link AutoCloseable} singletons and singletons with {@link javax.annotation.PreDestroy} annotated methods
+ * are disposed in reverse dependency order.
+ * <p>
+ * Implementation classes annotated with {@link ResolutionScoped} are instantiated once per call to
+ * {@link #resolve(Class)}, and shared by the whole graph built by that call.
+ * <p>
+ * When an interface type is resolved and its implementation has {@link Cached} methods, the container returns
+ * a proxy that memoizes the results of those methods (see {@link Cached}).
+ * <p>
+ * Fields can be qualified with {@link javax.inject.Named} or any other {@link javax.inject.Qualifier}
+ * annotation, so several bindings of the same type can coexist in the same container (see {@link Key}).
+ * <p>
+ * Batches of instances of the same type can be resolved with {@link #resolveMany(Class, int)}, which plans the
+ * resolution of the graph once and reuses the plan for every instance. Hot paths can keep the plan in a
+ * {@link Factory} returned by {@link #factoryFor(Class)}.
+ * <p>
+ * Instances created outside the container (deserialized objects, entities loaded in batches, ...) can get
+ * their fields injected with {@link #injectMembers(Object)} and {@link #injectMembers(Collection)}.
  *
  * @see DependencyResolver
  * @see Configuration
  */
-public class IoC {
+public class IoC implements AutoCloseable {
+    /**
+     * An immutable view of the resolvers chain, together with the caches that depend on it.
+     */
+    private static class Snapshot {
+        private final List<DependencyResolver> resolvers;
+        // The resolver that resolved each key the last time
+        private final Map<Key<?>, DependencyResolver> routes;
+        private final Map<Key<?>, ManagedInstance> singletons;
+
+        private Snapshot(List<DependencyResolver> resolvers, Map<Key<?>, DependencyResolver> routes,
+                         Map<Key<?>, ManagedInstance> singletons) {
+            this.resolvers = resolvers;
+            this.routes = routes;
+            this.singletons = singletons;
+        }
+    }
+
+    /**
+     * The state of a single call to {@link #resolve(Class)}. It's also the injector passed to the resolvers,
+     * so instances they inject are resolved within the same resolution.
+     */
+    private class Resolution implements MembersInjector {
+        private final Snapshot snapshot;
+        // The keys being injected. Not synchronized, as a resolution is confined to its thread
+        private final Deque<Key<?>> dependencies = new ArrayDeque<>();
+        // The singleton being built, if any
+        private ManagedInstance owner;
+        // The resolver that returned the last instance looked up
+        private DependencyResolver resolver;
+        // The resolution scoped instances. Only created when the first one is resolved
+        private Map<Key<?>, Object> shared;
+
+        private Resolution(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void injectMembers(Key<?> key, Object instance) throws DependencyResolutionException {
+            inject(this, key, instance, ClassMetadata.of(instance.getClass()));
+        }
+
+        @Override
+        public void manage(Object instance, Object... dependencies) {
+            IoC.this.manage(instance, dependencies);
+        }
+    }
+
+    /**
+     * How to build a type for {@link #resolveMany(Class, long, Consumer)} and {@link Factory}s: the resolver
+     * that resolves it, its implementation class and the plans of its injected fields. Plans are built with the
+     * first instance, and reused while the resolver returns instances of the same implementation class. Plans
+     * are bound to the snapshot they were built with.
+     */
+    private static class Plan {
+        private final Key<?> key;
+        // The singleton of the key in the snapshot of the plan, if any
+        private ManagedInstance singleton;
+        // Delegate to resolveInternal (unresolved types and resolution scoped instances)
+        private boolean delegate;
+        private DependencyResolver resolver;
+        private Class<?> impl;
+        private ClassMetadata metadata;
+        // Instances are created with the metadata of impl, without calling the resolver
+        private boolean constructed;
+        private boolean proxied;
+        // One plan per injected field, or null if the field is skipped (circular dependency)
+        private Plan[] dependencies;
+
+        private Plan(Key<?> key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * A plan together with the snapshot it was built with.
+     */
+    private static class CompiledPlan {
+        private final Snapshot snapshot;
+        private final Plan plan;
+
+        private CompiledPlan(Snapshot snapshot, Plan plan) {
+            this.snapshot = snapshot;
+            this.plan = plan;
+        }
+    }
+
+    /**
+     * A {@link Factory} that compiles the plan of its key with the first instance, and recompiles it when
+     * the resolvers of the container are rebound.
+     */
+    private class PlanFactory<T> implements Factory<T> {
+        private final Key<T> key;
+        // Only published once built, so other threads never see a partial plan
+        private volatile CompiledPlan compiled;
+
+        private PlanFactory(Key<T> key) {
+            this.key = key;
+        }
+
+        @Override
+        public T get() throws DependencyResolutionException {
+            if (closed.get()) {
+                throw new IllegalStateException("The container is closed");
+            }
+            Snapshot current = snapshot.get();
+            CompiledPlan c = compiled;
+            if (c != null && c.snapshot == current) {
+                return key.type().cast(build(new Resolution(current), c.plan));
+            }
+            Plan plan = new Plan(key);
+            T x = key.type().cast(build(new Resolution(current), plan));
+            compiled = new CompiledPlan(current, plan);
+            return x;
+        }
+
+        @Override
+        public String toString() {
+            return "Factory<" + key + ">";
+        }
+    }
+
+    /**
+     * Injects a range of a batch of instances with their planned classes, splitting the range in halves
+     * until it's small enough.
+     */
+    private class InjectionTask extends RecursiveAction {
+        private final Snapshot snapshot;
+        private final Object[] items;
+        // The instances already injected while planning their classes
+        private final BitSet planned;
+        private final Map<Class<?>, Plan> plans;
+        private final int from;
+        private final int to;
+
+        private InjectionTask(Snapshot snapshot, Object[] items, BitSet planned, Map<Class<?>, Plan> plans,
+                              int from, int to) {
+            this.snapshot = snapshot;
+            this.items = items;
+            this.planned = planned;
+            this.plans = plans;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > INJECTION_BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new InjectionTask(snapshot, items, planned, plans, from, middle),
+                        new InjectionTask(snapshot, items, planned, plans, middle, to));
+                return;
+            }
+            Resolution resolution = new Resolution(snapshot);
+            try {
+                for (int i = from; i < to; i++) {
+                    Object x = items[i];
+                    if (x != null && !planned.get(i)) {
+                        resolution.shared = null;
+                        Plan plan = plans.get(x.getClass());
+                        injectPlanned(resolution, plan.key, x, plan);
+                    }
+                }
+            } catch (DependencyResolutionException e) {
+                throw new CompletionException(e);
+            }
+        }
+    }
+
+    // The number of instances injected by every parallel task
+    private static final int INJECTION_BATCH_SIZE = 512;
+
     private final Configuration configuration;
-    private final List<DependencyResolver> resolvers;
+    private final AtomicReference<Snapshot> snapshot;
+    private final Queue<ManagedInstance> managed = new ConcurrentLinkedQueue<>();
+    // The instances handed by the resolvers (see MembersInjector#manage), by identity
+    private final Map<Object, ManagedInstance> handed = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final CompletableFuture<Void> warmUp;
 
     /**
      * Creates a new dependency container using the passed {@link DependencyResolver}s and using
@@ -88,7 +314,123 @@ public class IoC {
 
     private IoC(Configuration configuration, DependencyResolver... resolvers) {
         this.configuration = configuration;
-        this.resolvers = Arrays.asList(resolvers);
+        this.snapshot = new AtomicReference<>(new Snapshot(
+                Collections.unmodifiableList(Arrays.asList(resolvers.clone())),
+                new ConcurrentHashMap<>(), new ConcurrentHashMap<>()));
+        this.warmUp = configuration.preload()
+                ? Preloader.preload(snapshot.get().resolvers, configuration.preloadParallelism())
+                : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Returns a future that completes when the classes known by the resolvers of this container were
+     * preloaded in background. When preloading is disabled, the returned future is already completed.
+     * <pre>
+     *     IoC container = IoC.create(new Configuration.Builder().preload(true).build(), resolver);
+     *     container.warmUp().thenRun(() -&gt; readiness.set(true));
+     * </pre>
+     *
+     * @return the warm-up future.
+     * @see Configuration.Builder#preload(boolean)
+     */
+    public CompletableFuture<Void> warmUp() {
+        return warmUp;
+    }
+
+    /**
+     * Returns the {@link DependencyResolver}s currently used by this container to resolve types.
+     *
+     * @return an unmodifiable list of {@link DependencyResolver}s.
+     */
+    public List<DependencyResolver> resolvers() {
+        return snapshot.get().resolvers;
+    }
+
+    /**
+     * Returns the number of entries held by this container: the cached routes and singletons and the
+     * instances to dispose. Class metadata is shared by all the containers, so it isn't counted.
+     *
+     * @return the number of entries held by this container.
+     */
+    int entries() {
+        Snapshot current = snapshot.get();
+        return current.routes.size() + current.singletons.size() + managed.size();
+    }
+
+    /**
+     * Atomically replaces the {@link DependencyResolver}s of this container, discarding every cached
+     * resolution. The discarded singletons are no longer resolved, but they are still managed by the container
+     * (resolutions in progress and previous callers may be using them), so they are disposed on
+     * {@link #close()}.
+     *
+     * @param resolvers the new list of {@link DependencyResolver}s implementations used to resolve types.
+     * @see #rebind(Collection, DependencyResolver...)
+     */
+    public void rebind(DependencyResolver... resolvers) {
+        List<DependencyResolver> chain = Collections.unmodifiableList(Arrays.asList(resolvers.clone()));
+        snapshot.set(new Snapshot(chain, new ConcurrentHashMap<>(), new ConcurrentHashMap<>()));
+    }
+
+    /**
+     * Atomically replaces the {@link DependencyResolver}s of this container, discarding only the cached
+     * resolutions of the passed types and of the types whose resolver could now be preceded by another one
+     * (because it's no longer part of the chain, or because new resolvers were put before it). Singletons
+     * are discarded when their type is discarded, or when they depend (directly or through other instances)
+     * on a discarded type, so no singleton keeps stale injected instances. The discarded singletons are still
+     * managed by the container, and disposed on {@link #close()}.
+     * <p>
+     * Resolutions in progress finish with the previous resolvers, while new resolutions see the new ones.
+     *
+     * @param types the types whose binding changed.
+     * @param resolvers the new list of {@link DependencyResolver}s implementations used to resolve types.
+     */
+    public void rebind(Collection<Class<?>> types, DependencyResolver... resolvers) {
+        List<DependencyResolver> chain = Collections.unmodifiableList(Arrays.asList(resolvers.clone()));
+        Set<Class<?>> affected = new HashSet<>(types);
+        Snapshot previous;
+        Snapshot next;
+        do {
+            previous = snapshot.get();
+            next = rebound(previous, chain, affected);
+        } while (!snapshot.compareAndSet(previous, next));
+    }
+
+    private static Snapshot rebound(Snapshot current, List<DependencyResolver> chain, Set<Class<?>> affected) {
+        // A route is kept if the resolvers preceding its resolver already preceded it, so they still
+        // don't resolve its key
+        Map<DependencyResolver, Boolean> preceded = new IdentityHashMap<>();
+        for (DependencyResolver resolver : current.resolvers) {
+            preceded.put(resolver, !current.resolvers.subList(0, current.resolvers.indexOf(resolver))
+                    .containsAll(chain.subList(0, Math.max(0, chain.indexOf(resolver)))));
+        }
+        boolean added = !current.resolvers.containsAll(chain);
+        Map<Key<?>, DependencyResolver> routes = new ConcurrentHashMap<>();
+        current.routes.forEach((key, resolver) -> {
+            if (!affected.contains(key.type()) && chain.contains(resolver) && !preceded.get(resolver)) {
+                routes.put(key, resolver);
+            }
+        });
+
+        // Unresolved keys may be resolved by the new resolvers
+        Predicate<Key<?>> discarded = key -> affected.contains(key.type())
+                || (current.routes.containsKey(key) ? !routes.containsKey(key) : added);
+        Set<ManagedInstance> stale = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<Key<?>, ManagedInstance> e : current.singletons.entrySet()) {
+                ManagedInstance singleton = e.getValue();
+                if (!stale.contains(singleton) && (discarded.test(e.getKey())
+                        || singleton.keys().stream().anyMatch(discarded)
+                        || singleton.dependencies().stream().anyMatch(stale::contains))) {
+                    stale.add(singleton);
+                    changed = true;
+                }
+            }
+        }
+        Map<Key<?>, ManagedInstance> singletons = new ConcurrentHashMap<>(current.singletons);
+        singletons.values().removeIf(stale::contains);
+        return new Snapshot(chain, routes, singletons);
     }
 
     /**
@@ -98,73 +440,579 @@ public class IoC {
      * @param <T> the class type of the desired type.
      * @return an instance of the resolved type or <code>null</code> if not resolved.
      * @throws DependencyResolutionException if something when wrong trying to resolve the desired type.
+     * @throws IllegalStateException if the container was closed.
      */
     public <T> T resolve(Class<T> type) throws DependencyResolutionException {
-        Stack<Class<?>> dependencies = new Stack<>();
-        return resolveInternal(type, dependencies);
+        if (closed.get()) {
+            throw new IllegalStateException("The container is closed");
+        }
+        return resolveInternal(new Resolution(snapshot.get()), Key.of(type));
+    }
+
+    /**
+     * Resolves the passed binding key as argument and returns an instance of the resolved type. Qualified
+     * keys are only resolved by resolvers supporting qualifiers.
+     * <pre>
+     *     DataSource replica = container.resolve(Key.of(DataSource.class, "replica"));
+     * </pre>
+     *
+     * @param key the desired binding key.
+     * @param <T> the class type of the desired type.
+     * @return an instance of the resolved type or <code>null</code> if not resolved.
+     * @throws DependencyResolutionException if something when wrong trying to resolve the desired type.
+     * @throws IllegalStateException if the container was closed.
+     * @see Key
+     */
+    public <T> T resolve(Key<T> key) throws DependencyResolutionException {
+        if (closed.get()) {
+            throw new IllegalStateException("The container is closed");
+        }
+        return resolveInternal(new Resolution(snapshot.get()), key);
     }
 
-    private <T> T resolveInternal(Class<T> type, Stack<Class<?>> dependencies)
+    /**
+     * Resolves <code>n</code> instances of the passed type. The resolution plan (the resolvers, implementation
+     * classes and injected fields of the graph) is built once and reused for every instance, while singletons
+     * are shared as in {@link #resolve(Class)}.
+     *
+     * @param type the desired type.
+     * @param n the number of instances.
+     * @param <T> the class type of the desired type.
+     * @return a list with the resolved instances (or <code>null</code> elements if not resolved).
+     * @throws DependencyResolutionException if something when wrong trying to resolve the desired type.
+     * @throws IllegalStateException if the container was closed.
+     * @see #resolveMany(Class, long, Consumer)
+     */
+    public <T> List<T> resolveMany(Class<T> type, int n) throws DependencyResolutionException {
+        List<T> instances = new ArrayList<>(Math.max(0, n));
+        resolveMany(type, n, instances::add);
+        return instances;
+    }
+
+    /**
+     * Resolves <code>n</code> instances of the passed type, handing every instance to the passed consumer as
+     * soon as it's built, so they don't need to be held in memory at once.
+     * <pre>
+     *     container.resolveMany(Handler.class, messages.size(), handler -&gt; handler.handle(messages.poll()));
+     * </pre>
+     *
+     * @param type the desired type.
+     * @param n the number of instances.
+     * @param consumer the consumer of the resolved instances.
+     * @param <T> the class type of the desired type.
+     * @throws DependencyResolutionException if something when wrong trying to resolve the desired type.
+     * @throws IllegalStateException if the container was closed.
+     * @see #resolveMany(Class, int)
+     */
+    public <T> void resolveMany(Class<T> type, long n, Consumer<? super T> consumer)
             throws DependencyResolutionException {
-        // Resolve the type with one of the resolvers
-        Optional<T> o = resolvers.stream()
-                .map(r -> r.resolve(type))
-                .filter(Objects::nonNull)
-                .findFirst();
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        if (closed.get()) {
+            throw new IllegalStateException("The container is closed");
+        }
+        Resolution resolution = new Resolution(snapshot.get());
+        Plan plan = new Plan(Key.of(type));
+        try (Tracer.Span ignored = configuration.tracer().begin("resolveMany", type.getName())) {
+            for (long i = 0; i < n; i++) {
+                // Resolution scoped instances are not shared between the instances
+                resolution.shared = null;
+                consumer.accept(type.cast(build(resolution, plan)));
+            }
+        }
+    }
 
-        // If we were able to resolve the type, just try to resolve its field annotated with @Inject
-        if (o.isPresent()) {
-            // Save the type to check later for circular dependencies
-            dependencies.push(type);
+    /**
+     * Returns a reusable and thread-safe {@link Factory} of the passed type. The factory compiles the resolution
+     * plan of the type (as {@link #resolveMany(Class, long, Consumer)} does) with its first instance, and
+     * reuses it for the next ones, so it doesn't look up the resolvers, implementation classes or injected
+     * fields of the graph again. The plan is recompiled when the resolvers of the container are rebound.
+     * <pre>
+     *     Factory&lt;Handler&gt; handlers = container.factoryFor(Handler.class);
+     *     Handler handler = handlers.get();
+     * </pre>
+     *
+     * @param type the desired type.
+     * @param <T> the class type of the desired type.
+     * @return the factory.
+     * @throws IllegalStateException if the container was closed.
+     * @see Factory
+     */
+    public <T> Factory<T> factoryFor(Class<T> type) {
+        return factoryFor(Key.of(type));
+    }
 
-            // Get the implementation class
-            T x = o.get();
+    /**
+     * Returns a reusable and thread-safe {@link Factory} of the passed binding key.
+     *
+     * @param key the desired binding key.
+     * @param <T> the class type of the desired type.
+     * @return the factory.
+     * @throws IllegalStateException if the container was closed.
+     * @see #factoryFor(Class)
+     */
+    public <T> Factory<T> factoryFor(Key<T> key) {
+        if (closed.get()) {
+            throw new IllegalStateException("The container is closed");
+        }
+        return new PlanFactory<>(key);
+    }
 
-            // Inject every field annotated with @Inject
-            List<Field> fields = getInjectAnnotatedFields(x.getClass());
-            for (Field field : fields) {
-                // Check for circular dependencies
-                if (dependencies.contains(field.getType())) {
+    /**
+     * Injects the {@link javax.inject.Inject} annotated fields of an instance created outside the container
+     * (for example, a deserialized object), as if it had been resolved by the container. The instance itself
+     * isn't managed by the container, even if its class is a singleton.
+     *
+     * @param instance the instance.
+     * @throws DependencyResolutionException if something when wrong trying to resolve the injected fields.
+     * @throws IllegalStateException if the container was closed.
+     * @see #injectMembers(Collection)
+     */
+    public void injectMembers(Object instance) throws DependencyResolutionException {
+        if (closed.get()) {
+            throw new IllegalStateException("The container is closed");
+        }
+        Class<?> type = instance.getClass();
+        try (Tracer.Span ignored = configuration.tracer().begin("injectMembers", type.getName())) {
+            inject(new Resolution(snapshot.get()), Key.of(type), instance, ClassMetadata.of(type));
+        }
+    }
+
+    /**
+     * Injects the {@link javax.inject.Inject} annotated fields of a batch of instances created outside the
+     * container. The injection of every class is planned (as {@link #resolveMany(Class, long, Consumer)}
+     * does) with its first instance and reused for the rest. Batches of at least
+     * {@link Configuration.Builder#parallelInjectionThreshold(int)} instances are injected in parallel in the
+     * common {@link ForkJoinPool}. Resolution scoped instances are not shared between the instances, and
+     * <code>null</code> elements are skipped.
+     * <pre>
+     *     List&lt;Order&gt; orders = mapper.readValue(json, new TypeReference&lt;List&lt;Order&gt;&gt;() {});
+     *     container.injectMembers(orders);
+     * </pre>
+     *
+     * @param instances the instances.
+     * @throws DependencyResolutionException if something when wrong trying to resolve the injected fields.
+     * @throws IllegalStateException if the container was closed.
+     */
+    public void injectMembers(Collection<?> instances) throws DependencyResolutionException {
+        if (closed.get()) {
+            throw new IllegalStateException("The container is closed");
+        }
+        Object[] items = instances.toArray();
+        Snapshot current = snapshot.get();
+        boolean parallel = items.length >= configuration.parallelInjectionThreshold();
+        try (Tracer.Span ignored = configuration.tracer().begin("injectMembers", String.valueOf(items.length))) {
+            // Plan every class with its first instance. The plans are read-only once built, so they can be
+            // shared by the worker threads
+            Map<Class<?>, Plan> plans = new HashMap<>();
+            BitSet planned = parallel ? new BitSet(items.length) : null;
+            Resolution resolution = new Resolution(current);
+            for (int i = 0; i < items.length; i++) {
+                Object x = items[i];
+                if (x == null) {
+                    continue;
+                }
+                resolution.shared = null;
+                Plan plan = plans.get(x.getClass());
+                if (plan == null) {
+                    plans.put(x.getClass(), planMembers(resolution, x));
+                    if (parallel) {
+                        planned.set(i);
+                    }
+                } else if (!parallel) {
+                    injectPlanned(resolution, plan.key, x, plan);
+                }
+            }
+
+            if (parallel) {
+                try {
+                    ForkJoinPool.commonPool().invoke(
+                            new InjectionTask(current, items, planned, plans, 0, items.length));
+                } catch (RuntimeException e) {
+                    // Unwrap the resolution failures of the worker threads
+                    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                        if (cause instanceof DependencyResolutionException) {
+                            throw (DependencyResolutionException) cause;
+                        }
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes this container, disposing every singleton it manages. Singletons are disposed in reverse
+     * dependency order (a singleton is disposed only after every singleton that depends on it), calling
+     * first their {@link javax.annotation.PreDestroy} annotated methods and then their
+     * {@link AutoCloseable#close()} method. Independent singletons are disposed in parallel.
+     * <p>
+     * This method waits at most the time configured with
+     * {@link Configuration.Builder#disposeTimeout(long, TimeUnit)}, so a hung singleton can't block
+     * the shutdown. Failures disposing singletons are logged and ignored.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            Set<ManagedInstance> instances;
+            synchronized (handed) {
+                instances = new LinkedHashSet<>(managed);
+                managed.clear();
+            }
+            Disposer.dispose(instances, configuration.disposeParallelism(),
+                    configuration.disposeTimeoutNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T resolveInternal(Resolution resolution, Key<T> key) throws DependencyResolutionException {
+        // Track the keys the singleton being built depends on, so it can be discarded when they are rebound
+        if (resolution.owner != null) {
+            resolution.owner.dependOn(key);
+        }
+
+        // Singletons are only created once
+        ManagedInstance singleton = resolution.snapshot.singletons.get(key);
+        if (singleton != null) {
+            return (T) dependOn(resolution, singleton).reference();
+        }
+
+        // Resolution scoped instances are only created once per resolution
+        if (resolution.shared != null) {
+            Object shared = resolution.shared.get(key);
+            if (shared != null) {
+                return (T) shared;
+            }
+        }
+
+        try (Tracer.Span ignored = configuration.tracer().begin("resolve", key)) {
+            // Resolve the type with one of the resolvers
+            T x;
+            try (Tracer.Span ignored2 = configuration.tracer().begin("lookup", key)) {
+                x = lookup(resolution, key);
+            }
+
+            // If we were able to resolve the type, just try to resolve its field annotated with @Inject
+            if (x != null) {
+                return complete(resolution, key, x, resolution.resolver);
+            }
+        }
+
+        // We didn't resolve the type. Just apply the configured strategy
+        return notFound(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T complete(Resolution resolution, Key<T> key, T x, DependencyResolver resolver)
+            throws DependencyResolutionException {
+        ClassMetadata metadata = ClassMetadata.of(x.getClass());
+        boolean wired = resolver.injectsMembers(key);
+        if (metadata.isSingleton()) {
+            return (T) resolveSingleton(resolution, key, x, metadata, wired).reference();
+        }
+        T reference = (T) CachingProxy.wrap(key.type(), x);
+        if (metadata.isResolutionScoped()) {
+            if (resolution.shared == null) {
+                resolution.shared = new HashMap<>();
+            }
+            resolution.shared.put(key, reference);
+        }
+        if (!wired) {
+            inject(resolution, key, x, metadata);
+        }
+        return reference;
+    }
+
+    private <T> T notFound(Key<T> key) throws NoDependencyResolvedException {
+        switch (configuration.noDependencyFoundStrategy()) {
+            case THROW:
+                throw new NoDependencyResolvedException(key.type());
+            case NULL:
+            default:
+                return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object build(Resolution resolution, Plan plan) throws DependencyResolutionException {
+        Key<Object> key = (Key<Object>) plan.key;
+        if (plan.singleton != null) {
+            return dependOn(resolution, plan.singleton).reference();
+        }
+        if (plan.delegate) {
+            return resolveInternal(resolution, key);
+        }
+        if (plan.impl == null) {
+            return buildFirst(resolution, plan);
+        }
+
+        Object x;
+        if (plan.constructed) {
+            try {
+                x = plan.metadata.newInstance();
+            } catch (ReflectiveOperationException e) {
+                // Let the resolvers handle (and report) the failure
+                return resolveInternal(resolution, key);
+            }
+        } else {
+            x = plan.resolver.resolve(key, resolution);
+            if (x == null) {
+                // The resolver changed its mind. Resolve it the regular way
+                return resolveInternal(resolution, key);
+            }
+            if (x.getClass() != plan.impl) {
+                return complete(resolution, key, x, plan.resolver);
+            }
+        }
+
+        Object reference = plan.proxied ? CachingProxy.wrap(key.type(), x) : x;
+        injectPlanned(resolution, key, x, plan);
+        return reference;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object buildFirst(Resolution resolution, Plan plan) throws DependencyResolutionException {
+        Key<Object> key = (Key<Object>) plan.key;
+        Snapshot snapshot = resolution.snapshot;
+        ManagedInstance singleton = snapshot.singletons.get(key);
+        if (singleton != null) {
+            plan.singleton = singleton;
+            return dependOn(resolution, singleton).reference();
+        }
+        boolean created = resolution.shared != null && resolution.shared.containsKey(key);
+        Object x = created ? null : lookup(resolution, key);
+        if (x == null) {
+            plan.delegate = true;
+            return resolveInternal(resolution, key);
+        }
+        DependencyResolver resolver = resolution.resolver;
+        ClassMetadata metadata = ClassMetadata.of(x.getClass());
+        if (metadata.isSingleton() || metadata.isResolutionScoped()) {
+            plan.delegate = true;
+            Object reference = complete(resolution, key, x, resolver);
+            if (metadata.isSingleton()) {
+                plan.singleton = snapshot.singletons.get(key);
+            }
+            return reference;
+        }
+
+        // Instances wired by the resolver have nothing to plan
+        Object reference = CachingProxy.wrap(key.type(), x);
+        Plan[] plans = resolver.injectsMembers(key) ? new Plan[0] : planFields(resolution, key, x, metadata);
+
+        plan.resolver = resolver;
+        plan.metadata = metadata;
+        plan.constructed = resolver.implementationOf(key) == x.getClass();
+        plan.proxied = reference != x;
+        plan.dependencies = plans;
+        plan.impl = x.getClass();
+        return reference;
+    }
+
+    /**
+     * Injects the fields of an instance created outside the container, and returns the plan of its class.
+     */
+    private Plan planMembers(Resolution resolution, Object x) throws DependencyResolutionException {
+        Plan plan = new Plan(Key.of(x.getClass()));
+        plan.metadata = ClassMetadata.of(x.getClass());
+        plan.dependencies = planFields(resolution, plan.key, x, plan.metadata);
+        plan.impl = x.getClass();
+        return plan;
+    }
+
+    /**
+     * Injects the fields of an instance, planning them. Circular dependencies are only checked here.
+     */
+    private Plan[] planFields(Resolution resolution, Key<?> key, Object x, ClassMetadata metadata)
+            throws DependencyResolutionException {
+        Deque<Key<?>> dependencies = resolution.dependencies;
+        List<Field> fields = metadata.injectFields();
+        List<Key<?>> keys = metadata.injectKeys();
+        Plan[] plans = new Plan[fields.size()];
+        dependencies.push(key);
+        try {
+            for (int i = 0; i < plans.length; i++) {
+                if (dependencies.contains(keys.get(i))) {
                     switch (configuration.circularDependencyStrategy()) {
                         case THROW:
-                            throw new CircularDependencyDetectedException(dependencies.peek());
+                            throw new CircularDependencyDetectedException(dependencies.peek().type());
                         case NULL:
                         default:
                     }
                     continue;
                 }
+                plans[i] = new Plan(keys.get(i));
+                set(fields.get(i), x, build(resolution, plans[i]));
+            }
+        } finally {
+            dependencies.pop();
+        }
+        return plans;
+    }
 
-                // Resolve the field and save it with reflection into the parent object
-                Object z = resolveInternal(field.getType(), dependencies);
-                field.setAccessible(true);
+    /**
+     * Injects the fields of an instance with the plans of its fields.
+     */
+    private void injectPlanned(Resolution resolution, Key<?> key, Object x, Plan plan)
+            throws DependencyResolutionException {
+        ClassMetadata metadata = plan.metadata;
+        Plan[] plans = plan.dependencies;
+        resolution.dependencies.push(key);
+        try {
+            for (int i = 0; i < plans.length; i++) {
+                if (plans[i] != null) {
+                    set(metadata, i, x, build(resolution, plans[i]));
+                }
+            }
+        } finally {
+            resolution.dependencies.pop();
+        }
+    }
+
+    private ManagedInstance resolveSingleton(
+            Resolution resolution, Key<?> key, Object x, ClassMetadata metadata, boolean wired)
+            throws DependencyResolutionException {
+        // Other thread could create the singleton in the meantime
+        Map<Key<?>, ManagedInstance> singletons = resolution.snapshot.singletons;
+        ManagedInstance singleton = singletons.get(key);
+        if (singleton == null) {
+            // Built without holding any lock, so other threads creating singletons don't wait for this one
+            ManagedInstance created = new ManagedInstance(
+                    x, CachingProxy.wrap(key.type(), x), metadata.preDestroyMethods());
+            if (!wired) {
+                ManagedInstance owner = resolution.owner;
+                resolution.owner = created;
                 try {
-                    field.set(x, z);
-                } catch (IllegalAccessException e) {
-                    // We cannot access the field. Just apply the configured strategy
-                    switch (configuration.nonAccessibleFieldStrategy()) {
+                    inject(resolution, key, x, metadata);
+                } finally {
+                    resolution.owner = owner;
+                }
+            }
+            singleton = singletons.putIfAbsent(key, created);
+            if (singleton == null) {
+                singleton = created;
+                managed.add(created);
+            } else if (!handed.containsKey(x)) {
+                // Other thread published its singleton first. Dispose the one built by this thread, unless
+                // it's the same instance shared by the resolver
+                Disposer.dispose(created);
+            }
+        }
+        return dependOn(resolution, singleton);
+    }
+
+    private void manage(Object instance, Object[] dependencies) {
+        // Synchronized with close(), so an instance is either disposed or rejected
+        synchronized (handed) {
+            if (closed.get() || handed.containsKey(instance)) {
+                return;
+            }
+            ManagedInstance created = new ManagedInstance(
+                    instance, instance, ClassMetadata.of(instance.getClass()).preDestroyMethods());
+            for (Object dependency : dependencies) {
+                ManagedInstance d = dependency != null ? handed.get(dependency) : null;
+                if (d != null) {
+                    created.dependOn(d);
+                }
+            }
+            handed.put(instance, created);
+            managed.add(created);
+        }
+    }
+
+    private ManagedInstance dependOn(Resolution resolution, ManagedInstance singleton) {
+        if (resolution.owner != null) {
+            resolution.owner.dependOn(singleton);
+        }
+        return singleton;
+    }
+
+    private void inject(Resolution resolution, Key<?> key, Object x, ClassMetadata metadata)
+            throws DependencyResolutionException {
+        Deque<Key<?>> dependencies = resolution.dependencies;
+
+        // Save the key to check later for circular dependencies
+        dependencies.push(key);
+        try {
+            // Inject every field annotated with @Inject
+            List<Field> fields = metadata.injectFields();
+            List<Key<?>> keys = metadata.injectKeys();
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                // Check for circular dependencies
+                if (dependencies.contains(keys.get(i))) {
+                    switch (configuration.circularDependencyStrategy()) {
                         case THROW:
-                            throw new NonAccessibleFieldException(field);
+                            throw new CircularDependencyDetectedException(dependencies.peek().type());
                         case NULL:
                         default:
                     }
+                    continue;
+                }
+
+                // Resolve the field and save it with reflection into the parent object
+                try (Tracer.Span ignored = configuration.tracer().begin("inject", field.getName())) {
+                    set(field, x, resolveInternal(resolution, keys.get(i)));
                 }
             }
-            return x;
+        } finally {
+            // The type is no longer a dependency of its siblings
+            dependencies.pop();
         }
+    }
 
-        // We didn't resolve the type. Just apply the configured strategy
-        switch (configuration.noDependencyFoundStrategy()) {
-            case THROW:
-                throw new NoDependencyResolvedException(type);
-            case NULL:
-            default:
-                return null;
+    private void set(Field field, Object x, Object z) throws NonAccessibleFieldException {
+        try {
+            field.set(x, z);
+        } catch (IllegalAccessException e) {
+            // We cannot access the field. Just apply the configured strategy
+            switch (configuration.nonAccessibleFieldStrategy()) {
+                case THROW:
+                    throw new NonAccessibleFieldException(field);
+                case NULL:
+                default:
+            }
         }
     }
 
-    private List<Field> getInjectAnnotatedFields(Class clazz) {
-        return Arrays.stream(clazz.getDeclaredFields())
-                .filter(f -> f.getAnnotation(Inject.class) != null)
-                .collect(Collectors.toList());
+    private void set(ClassMetadata metadata, int index, Object x, Object z) throws NonAccessibleFieldException {
+        try {
+            metadata.inject(index, x, z);
+        } catch (IllegalAccessException e) {
+            // We cannot access the field. Just apply the configured strategy
+            switch (configuration.nonAccessibleFieldStrategy()) {
+                case THROW:
+                    throw new NonAccessibleFieldException(metadata.injectFields().get(index));
+                case NULL:
+                default:
+            }
+        }
+    }
+
+    private <T> T lookup(Resolution resolution, Key<T> key) throws DependencyResolutionException {
+        // Try first with the resolver that resolved the key the last time. The route pins the key to it until
+        // the next rebind, even if a preceding resolver starts resolving the key in the meantime
+        Snapshot snapshot = resolution.snapshot;
+        DependencyResolver route = snapshot.routes.get(key);
+        if (route != null) {
+            T x = route.resolve(key, resolution);
+            if (x != null) {
+                resolution.resolver = route;
+                return x;
+            }
+        }
+        for (DependencyResolver resolver : snapshot.resolvers) {
+            if (resolver == route) {
+                continue;
+            }
+            T x = resolver.resolve(key, resolution);
+            if (x != null) {
+                snapshot.routes.put(key, resolver);
+                resolution.resolver = resolver;
+                return x;
+            }
+        }
+        return null;
     }
 }
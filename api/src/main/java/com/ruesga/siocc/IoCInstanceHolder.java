@@ -1,7 +1,7 @@
 package com.ruesga.siocc;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A simple {@link IoC} instance holder to provided easy access to containers singleton instances.
@@ -14,7 +14,7 @@ import java.util.Map;
  * </pre>
  */
 public class IoCInstanceHolder {
-    private static Map<String, IoC> containers = new HashMap<>();
+    private static Map<String, IoC> containers = new ConcurrentHashMap<>();
 
     /**
      * Registers a container and associate it to a tag.
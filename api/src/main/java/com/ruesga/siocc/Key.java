@@ -0,0 +1,203 @@
+package com.ruesga.siocc;
+
+import javax.inject.Named;
+import javax.inject.Qualifier;
+import java.lang.annotation.Annotation;
+
+/**
+ * A binding key: a type together with an optional <a href="https://jcp.org/en/jsr/detail?id=330">JSR-330</a>
+ * qualifier, so several bindings of the same type can coexist in a container.
+ * <pre>
+ *     BasicDependencyResolver resolver = new BasicDependencyResolver.Builder()
+ *             .register(Key.of(DataSource.class, "primary"), PrimaryDataSource.class)
+ *             .register(Key.of(DataSource.class, "replica"), ReplicaDataSource.class)
+ *             .build();
+ *
+ * public class Repository {
+ *     &#64;Inject &#64;Named("replica")
+ *     private DataSource dataSource;
+ * }
+ * </pre>
+ * Keys precompute their hash code, and compare {@link Named} qualifiers by their value and qualifiers
+ * without members by their type, so qualified lookups are as cheap as unqualified ones.
+ *
+ * @param <T> the type.
+ */
+public final class Key<T> {
+    private final Class<T> type;
+    private final Annotation qualifier;
+    // The value compared by equals: the name of @Named qualifiers, the type of marker qualifiers, or the
+    // qualifier itself
+    private final Object qualifierId;
+    private final int hashCode;
+
+    private Key(Class<T> type, Annotation qualifier) {
+        this.type = type;
+        this.qualifier = qualifier;
+        this.qualifierId = qualifierIdOf(qualifier);
+        this.hashCode = 31 * type.hashCode() + (qualifierId == null ? 0 : qualifierId.hashCode());
+    }
+
+    /**
+     * Returns the unqualified key of the passed type.
+     *
+     * @param type the type.
+     * @param <T> the class' type.
+     * @return the key.
+     */
+    public static <T> Key<T> of(Class<T> type) {
+        return new Key<>(type, null);
+    }
+
+    /**
+     * Returns the key of the passed type qualified with the passed qualifier.
+     *
+     * @param type the type.
+     * @param qualifier the qualifier, or <code>null</code> for an unqualified key.
+     * @param <T> the class' type.
+     * @return the key.
+     * @throws IllegalArgumentException if the annotation isn't annotated with {@link Qualifier}.
+     */
+    public static <T> Key<T> of(Class<T> type, Annotation qualifier) {
+        if (qualifier != null && !isQualifier(qualifier.annotationType())) {
+            throw new IllegalArgumentException(qualifier.annotationType().getName() + " is not a @Qualifier");
+        }
+        return new Key<>(type, qualifier);
+    }
+
+    /**
+     * Returns the key of the passed type qualified with {@link Named} and the passed name.
+     *
+     * @param type the type.
+     * @param name the name.
+     * @param <T> the class' type.
+     * @return the key.
+     */
+    public static <T> Key<T> of(Class<T> type, String name) {
+        return new Key<>(type, new NamedQualifier(name));
+    }
+
+    /**
+     * Returns the type of this key.
+     *
+     * @return the type.
+     */
+    public Class<T> type() {
+        return type;
+    }
+
+    /**
+     * Returns the qualifier of this key.
+     *
+     * @return the qualifier, or <code>null</code> if the key is unqualified.
+     */
+    public Annotation qualifier() {
+        return qualifier;
+    }
+
+    /**
+     * Returns a key of the passed type with the qualifier of this key.
+     *
+     * @param type the type.
+     * @param <S> the class' type.
+     * @return the key.
+     */
+    public <S> Key<S> withType(Class<S> type) {
+        return new Key<>(type, qualifier);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Key)) {
+            return false;
+        }
+        Key<?> key = (Key<?>) o;
+        return hashCode == key.hashCode && type == key.type
+                && (qualifierId == null ? key.qualifierId == null : qualifierId.equals(key.qualifierId));
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return qualifier == null ? type.getName() : qualifier + " " + type.getName();
+    }
+
+    /**
+     * Returns the qualifier among the passed annotations.
+     *
+     * @param annotations the annotations (of a field or a class).
+     * @return the qualifier, or <code>null</code> if there is none.
+     */
+    static Annotation qualifierOf(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (isQualifier(annotation.annotationType())) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isQualifier(Class<? extends Annotation> type) {
+        return type.isAnnotationPresent(Qualifier.class);
+    }
+
+    private static Object qualifierIdOf(Annotation qualifier) {
+        if (qualifier == null) {
+            return null;
+        }
+        if (qualifier instanceof Named) {
+            return ((Named) qualifier).value();
+        }
+        if (qualifier.annotationType().getDeclaredMethods().length == 0) {
+            return qualifier.annotationType();
+        }
+        return qualifier;
+    }
+
+    /**
+     * A {@link Named} implementation, equal to the {@link Named} annotations with the same value.
+     */
+    private static final class NamedQualifier implements Named {
+        private final String value;
+
+        private NamedQualifier(String value) {
+            if (value == null) {
+                throw new IllegalArgumentException("name can't be null");
+            }
+            this.value = value;
+        }
+
+        @Override
+        public String value() {
+            return value;
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Named.class;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Named && value.equals(((Named) o).value());
+        }
+
+        @Override
+        public int hashCode() {
+            // As defined by Annotation#hashCode()
+            return (127 * "value".hashCode()) ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "@" + Named.class.getName() + "(value=" + value + ")";
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.ruesga.siocc;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An instance whose lifecycle is managed by an {@link IoC} container, together with the managed instances
+ * and the keys it depends on.
+ */
+class ManagedInstance {
+    private final Object instance;
+    // The reference handed to the dependants (the instance or its caching proxy)
+    private final Object reference;
+    private final List<Method> preDestroyMethods;
+    private final Set<ManagedInstance> dependencies = new LinkedHashSet<>();
+    // The keys resolved while injecting the instance, directly or through its non managed dependencies
+    private final Set<Key<?>> keys = new HashSet<>();
+
+    ManagedInstance(Object instance, Object reference, List<Method> preDestroyMethods) {
+        this.instance = instance;
+        this.reference = reference;
+        this.preDestroyMethods = preDestroyMethods;
+    }
+
+    Object instance() {
+        return instance;
+    }
+
+    Object reference() {
+        return reference;
+    }
+
+    List<Method> preDestroyMethods() {
+        return preDestroyMethods;
+    }
+
+    synchronized void dependOn(ManagedInstance dependency) {
+        if (dependency != this) {
+            dependencies.add(dependency);
+        }
+    }
+
+    synchronized Set<ManagedInstance> dependencies() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(dependencies));
+    }
+
+    synchronized void dependOn(Key<?> key) {
+        keys.add(key);
+    }
+
+    synchronized Set<Key<?>> keys() {
+        return Collections.unmodifiableSet(new HashSet<>(keys));
+    }
+}
@@ -0,0 +1,96 @@
+package com.ruesga.siocc;
+
+import com.ruesga.siocc.resolvers.DependencyResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads and initializes, in background, the classes known by a set of {@link DependencyResolver}s and the
+ * types of their {@link javax.inject.Inject} annotated fields, so the first resolutions don't pay for class
+ * loading, static initialization and metadata computation.
+ */
+class Preloader {
+    private final static Logger logger = LoggerFactory.getLogger(Preloader.class);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final Set<Class<?>> visited = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private final ExecutorService executor;
+
+    private Preloader(int parallelism) {
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "siocc-preloader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Preloads the types known by the passed resolvers. The known types are enumerated in background too,
+     * since resolvers may need to load classes to enumerate them.
+     *
+     * @return a future completed when every type was preloaded.
+     */
+    static CompletableFuture<Void> preload(Collection<DependencyResolver> resolvers, int parallelism) {
+        Preloader preloader = new Preloader(parallelism);
+        // Hold a pending task until every known type was submitted
+        preloader.pending.incrementAndGet();
+        preloader.executor.execute(() -> {
+            try {
+                for (DependencyResolver resolver : resolvers) {
+                    try {
+                        resolver.knownTypes().forEach(preloader::submit);
+                    } catch (RuntimeException | LinkageError e) {
+                        logger.warn("Can't preload the types known by '{}'", resolver.getClass().getName(), e);
+                    }
+                }
+            } finally {
+                preloader.done();
+            }
+        });
+        return preloader.future;
+    }
+
+    private void submit(Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || !visited.add(type)) {
+            return;
+        }
+        pending.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                preload(type);
+            } finally {
+                done();
+            }
+        });
+    }
+
+    private void preload(Class<?> type) {
+        try {
+            Class.forName(type.getName(), true, type.getClassLoader());
+            for (Field field : ClassMetadata.of(type).injectFields()) {
+                submit(field.getType());
+            }
+        } catch (ClassNotFoundException | LinkageError e) {
+            logger.warn("Can't preload type '{}'", type.getName(), e);
+        }
+    }
+
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            executor.shutdown();
+            future.complete(null);
+        }
+    }
+}
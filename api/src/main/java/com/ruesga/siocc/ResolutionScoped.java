@@ -0,0 +1,26 @@
+package com.ruesga.siocc;
+
+import javax.inject.Scope;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A scope annotation to declare that a single instance of the annotated class is shared by the whole graph
+ * built by a single call to {@link IoC#resolve(Class)}. For example, if <code>A</code> injects <code>B</code>
+ * and <code>C</code>, and both inject a resolution scoped <code>D</code>, then <code>B</code> and <code>C</code>
+ * share the same <code>D</code> instance, while another call to {@link IoC#resolve(Class)} creates a new one.
+ * <pre>
+ * &#64;ResolutionScoped
+ * public class RequestContext {
+ * }
+ * </pre>
+ */
+@Scope
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface ResolutionScoped {
+}
@@ -0,0 +1,178 @@
+package com.ruesga.siocc;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A tracer that records nested begin/end spans (classpath scanning, resolver lookups, instantiations, field
+ * injections, ...) per thread, and exports them in the
+ * <a href="https://docs.google.com/document/d/1CvAClvFfyA5R-PhYUmn5OOQtYMH4h6I0nSsKchNAySU">Chrome
+ * trace_event</a> JSON format, so they can be opened as a timeline in <code>chrome://tracing</code> or
+ * <a href="https://ui.perfetto.dev">Perfetto</a>.
+ * <p>
+ * Tracing is opt-in. A {@link Tracer} is passed to the container with
+ * {@link Configuration.Builder#tracer(Tracer)}, and to the resolvers that support it through their builders.
+ * <pre>
+ *     Tracer tracer = new Tracer();
+ *     Configuration configuration = new Configuration.Builder()
+ *         .tracer(tracer)
+ *         .build();
+ *     AnnotationDependencyResolver resolver =
+ *                 new AnnotationDependencyResolver.Builder()
+ *                         .tracer(tracer)
+ *                         .scan("com.example")
+ *                         .build();
+ *     IoC container = IoC.create(configuration, resolver);
+ *     container.resolve(Service.class);
+ *
+ *     try (Writer writer = Files.newBufferedWriter(Paths.get("startup.json"))) {
+ *         tracer.writeChromeTrace(writer);
+ *     }
+ * </pre>
+ */
+public class Tracer {
+    /**
+     * A tracer that doesn't record anything.
+     */
+    public static final Tracer DISABLED = new Tracer(false);
+
+    /**
+     * A traced span. Spans are ended by calling its {@link #close()} method, usually in a
+     * <i>try-with-resources</i> statement.
+     */
+    public static class Span implements AutoCloseable {
+        private final Tracer tracer;
+        private final String category;
+        private final Object name;
+        private final long start;
+
+        private Span(Tracer tracer, String category, Object name) {
+            this.tracer = tracer;
+            this.category = category;
+            this.name = name;
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Ends this span.
+         */
+        @Override
+        public void close() {
+            if (tracer != null) {
+                Thread thread = Thread.currentThread();
+                tracer.events.add(new Event(category, String.valueOf(name), start, System.nanoTime() - start,
+                        thread.getId(), thread.getName()));
+            }
+        }
+    }
+
+    private static class Event {
+        private final String category;
+        private final String name;
+        private final long start;
+        private final long duration;
+        private final long tid;
+        private final String threadName;
+
+        private Event(String category, String name, long start, long duration, long tid, String threadName) {
+            this.category = category;
+            this.name = name;
+            this.start = start;
+            this.duration = duration;
+            this.tid = tid;
+            this.threadName = threadName;
+        }
+    }
+
+    private static final Span NO_SPAN = new Span(null, null, null);
+
+    private final boolean enabled;
+    private final long origin = System.nanoTime();
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a new {@link Tracer} reference.
+     */
+    public Tracer() {
+        this(true);
+    }
+
+    private Tracer(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Begins a new span in the current thread.
+     *
+     * @param category the category of the span (scan, lookup, instantiate, inject, ...).
+     * @param name the name of the span, or an object naming it (a key, a type, ...). Objects are only
+     *             converted to strings when the span is recorded, so disabled tracers don't format them.
+     * @return the span, that must be closed to end it.
+     */
+    public Span begin(String category, Object name) {
+        if (!enabled) {
+            return NO_SPAN;
+        }
+        return new Span(this, category, name);
+    }
+
+    /**
+     * Writes the recorded spans in the Chrome <code>trace_event</code> JSON format.
+     *
+     * @param writer the writer where to write the trace.
+     * @throws IOException if the trace couldn't be written.
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        List<Event> events = new ArrayList<>(this.events);
+        Map<Long, String> threads = new LinkedHashMap<>();
+        events.forEach(e -> threads.putIfAbsent(e.tid, e.threadName));
+
+        writer.write("{\"traceEvents\":[");
+        boolean first = true;
+        for (Map.Entry<Long, String> thread : threads.entrySet()) {
+            writer.write(first ? "\n" : ",\n");
+            writer.write(String.format(Locale.ROOT,
+                    "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":%s}}",
+                    thread.getKey(), quote(thread.getValue())));
+            first = false;
+        }
+        for (Event event : events) {
+            writer.write(first ? "\n" : ",\n");
+            writer.write(String.format(Locale.ROOT,
+                    "{\"name\":%s,\"cat\":%s,\"ph\":\"X\",\"ts\":%.3f,\"dur\":%.3f,\"pid\":1,\"tid\":%d}",
+                    quote(event.name), quote(event.category),
+                    (event.start - origin) / 1000d, event.duration / 1000d, event.tid));
+            first = false;
+        }
+        writer.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+        writer.flush();
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
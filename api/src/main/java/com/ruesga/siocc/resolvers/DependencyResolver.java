@@ -1,5 +1,74 @@
 package com.ruesga.siocc.resolvers;
 
+import com.ruesga.siocc.Key;
+
+import java.util.Collections;
+import java.util.Set;
+
 public interface DependencyResolver {
     <T> T resolve(Class<T> type);
+
+    /**
+     * Resolves the passed binding key. By default, only unqualified keys are resolved (by their type), so
+     * resolvers supporting qualifiers must override this method.
+     *
+     * @param key the binding key.
+     * @param <T> the class type of the desired type.
+     * @return an instance of the resolved type or <code>null</code> if not resolved.
+     */
+    default <T> T resolve(Key<T> key) {
+        return key.qualifier() == null ? resolve(key.type()) : null;
+    }
+
+    /**
+     * Returns the types (bound types and implementation classes) this resolver knows in advance, so they
+     * can be preloaded by the container. Resolvers that can't enumerate their types return an empty set.
+     *
+     * @return the known types.
+     */
+    default Set<Class<?>> knownTypes() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Resolves the passed binding key, with an injector of the container resolving it. Resolvers that reuse
+     * their instances (caches, pools, ...) use the injector to inject a new instance once, before sharing it,
+     * and return <code>true</code> from {@link #injectsMembers(Key)}, so the container doesn't inject it again
+     * while others are using it. By default, the injector is ignored.
+     *
+     * @param key the binding key.
+     * @param injector the injector of the container.
+     * @param <T> the class type of the desired type.
+     * @return an instance of the resolved type or <code>null</code> if not resolved.
+     * @throws DependencyResolutionException if something when wrong trying to inject the instance.
+     */
+    default <T> T resolve(Key<T> key, MembersInjector injector) throws DependencyResolutionException {
+        return resolve(key);
+    }
+
+    /**
+     * Returns whether the instances returned by this resolver for the passed key already have their
+     * dependencies injected (for example, by generated wiring code or by the injector passed to
+     * {@link #resolve(Key, MembersInjector)}), so the container must not inject their fields again.
+     *
+     * @param key the binding key.
+     * @return <code>true</code> if the resolver returns fully wired instances of the key.
+     */
+    default boolean injectsMembers(Key<?> key) {
+        return false;
+    }
+
+    /**
+     * Returns the implementation class this resolver instantiates for the passed key, if it just creates it
+     * with {@link com.ruesga.siocc.ClassMetadata#newInstance()}, without caching, wiring or tracking it. The
+     * container can then create the instances of the key itself, without calling this resolver (for example,
+     * in the plans of a {@link com.ruesga.siocc.Factory}). The class must not change while the resolver is used.
+     *
+     * @param key the binding key.
+     * @return the implementation class of the key, or <code>null</code> if its instances are created in any
+     *         other way (the default).
+     */
+    default Class<?> implementationOf(Key<?> key) {
+        return null;
+    }
 }
@@ -0,0 +1,30 @@
+package com.ruesga.siocc.resolvers;
+
+import com.ruesga.siocc.Key;
+
+/**
+ * Injects the {@link javax.inject.Inject} annotated fields of an instance, resolving them with the container
+ * that passed the injector to {@link DependencyResolver#resolve(Key, MembersInjector)}. Resolvers also use it
+ * to hand the container the shared instances they create, so the container disposes them.
+ */
+public interface MembersInjector {
+    /**
+     * Injects the fields of an instance bound to the passed key.
+     *
+     * @param key the binding key the instance was resolved for.
+     * @param instance the instance.
+     * @throws DependencyResolutionException if something when wrong trying to resolve the injected fields.
+     */
+    void injectMembers(Key<?> key, Object instance) throws DependencyResolutionException;
+
+    /**
+     * Hands a shared instance created by the resolver (for example, a singleton of generated wiring code) to
+     * the container, which disposes it when it's closed, as it does with its own singletons. The instance is
+     * disposed after every managed instance that depends on it, and only once, even if it's handed again or
+     * resolved for several keys.
+     *
+     * @param instance the instance.
+     * @param dependencies the instances it depends on, already handed to the container.
+     */
+    void manage(Object instance, Object... dependencies);
+}
@@ -0,0 +1,206 @@
+package com.ruesga.siocc;
+
+import com.ruesga.siocc.resolvers.DependencyResolver;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.inject.Singleton;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+@RunWith(JUnit4.class)
+public class CachingProxyTest {
+    public interface Calculator {
+        @Cached(maximumSize = 2)
+        int square(int value);
+
+        int cube(int value);
+
+        String nameOf(Integer value);
+
+        @Cached
+        int sum(int... values);
+
+        void fail();
+    }
+
+    public static class CalculatorImpl implements Calculator {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public int square(int value) {
+            calls.incrementAndGet();
+            return value * value;
+        }
+
+        @Override
+        public int cube(int value) {
+            calls.incrementAndGet();
+            return value * value * value;
+        }
+
+        @Override
+        @Cached
+        public String nameOf(Integer value) {
+            calls.incrementAndGet();
+            return value == null ? null : String.valueOf(value);
+        }
+
+        @Override
+        public int sum(int... values) {
+            calls.incrementAndGet();
+            int sum = 0;
+            for (int value : values) {
+                sum += value;
+            }
+            return sum;
+        }
+
+        @Override
+        @Cached
+        public void fail() {
+            throw new IllegalStateException("fail");
+        }
+    }
+
+    public interface Plain {
+        int value();
+    }
+
+    public static class PlainImpl implements Plain {
+        @Override
+        public int value() {
+            return 1;
+        }
+    }
+
+    public interface Shared {
+        @Cached
+        int value();
+    }
+
+    @Singleton
+    public static class SharedImpl implements Shared {
+        @Override
+        public int value() {
+            return 1;
+        }
+    }
+
+    private static class TestDependencyResolver implements DependencyResolver {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T resolve(Class<T> type) {
+            if (type.equals(Calculator.class)) {
+                return (T) new CalculatorImpl();
+            }
+            if (type.equals(Shared.class)) {
+                return (T) new SharedImpl();
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void testCachedMethods() {
+        CalculatorImpl impl = new CalculatorImpl();
+        Calculator calculator = (Calculator) CachingProxy.wrap(Calculator.class, impl);
+        assertThat(Proxy.isProxyClass(calculator.getClass()), equalTo(true));
+
+        assertThat(calculator.square(2), equalTo(4));
+        assertThat(calculator.square(2), equalTo(4));
+        assertThat(impl.calls.get(), equalTo(1));
+
+        // Methods annotated in the implementation are cached too, including null results
+        assertThat(calculator.nameOf(null), nullValue());
+        assertThat(calculator.nameOf(null), nullValue());
+        assertThat(calculator.nameOf(3), equalTo("3"));
+        assertThat(calculator.nameOf(3), equalTo("3"));
+        assertThat(impl.calls.get(), equalTo(3));
+
+        // Non cached methods are delegated
+        assertThat(calculator.cube(2), equalTo(8));
+        assertThat(calculator.cube(2), equalTo(8));
+        assertThat(impl.calls.get(), equalTo(5));
+    }
+
+    @Test
+    public void testEviction() {
+        CalculatorImpl impl = new CalculatorImpl();
+        Calculator calculator = (Calculator) CachingProxy.wrap(Calculator.class, impl);
+        calculator.square(1);
+        calculator.square(2);
+        calculator.square(3);
+        assertThat(impl.calls.get(), equalTo(3));
+
+        // The first cached result was evicted
+        calculator.square(3);
+        calculator.square(2);
+        assertThat(impl.calls.get(), equalTo(3));
+        calculator.square(1);
+        assertThat(impl.calls.get(), equalTo(4));
+    }
+
+    @Test
+    public void testArgumentsCopied() {
+        CalculatorImpl impl = new CalculatorImpl();
+        Calculator calculator = (Calculator) CachingProxy.wrap(Calculator.class, impl);
+        int[] values = {1, 2};
+        assertThat(calculator.sum(values), equalTo(3));
+
+        // Modifying the passed array doesn't modify the cached key
+        values[1] = 3;
+        assertThat(calculator.sum(values), equalTo(4));
+        assertThat(calculator.sum(1, 2), equalTo(3));
+        assertThat(impl.calls.get(), equalTo(2));
+    }
+
+    @Test
+    public void testPrototypeCaches() throws Exception {
+        IoC container = IoC.create(new TestDependencyResolver());
+        Calculator calculator = container.resolve(Calculator.class);
+        Calculator other = container.resolve(Calculator.class);
+
+        // Every prototype instance has its own cache
+        assertThat(Proxy.getInvocationHandler(other),
+                not(sameInstance(Proxy.getInvocationHandler(calculator))));
+        assertThat(calculator.square(3), equalTo(9));
+        assertThat(other.square(3), equalTo(9));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExceptions() {
+        Calculator calculator = (Calculator) CachingProxy.wrap(Calculator.class, new CalculatorImpl());
+        calculator.fail();
+    }
+
+    @Test
+    public void testNoCachedMethods() {
+        PlainImpl impl = new PlainImpl();
+        assertThat(CachingProxy.wrap(Plain.class, impl), sameInstance(impl));
+        assertThat(CachingProxy.wrap(PlainImpl.class, impl), sameInstance(impl));
+
+        CalculatorImpl calculator = new CalculatorImpl();
+        assertThat(CachingProxy.wrap(CalculatorImpl.class, calculator), sameInstance(calculator));
+    }
+
+    @Test
+    public void testResolve() throws Exception {
+        IoC container = IoC.create(new TestDependencyResolver());
+        Calculator calculator = container.resolve(Calculator.class);
+        assertThat(Proxy.isProxyClass(calculator.getClass()), equalTo(true));
+        assertThat(calculator.square(3), equalTo(9));
+
+        // Singletons share the proxy, so they share the memoized results
+        Shared shared = container.resolve(Shared.class);
+        assertThat(Proxy.isProxyClass(shared.getClass()), equalTo(true));
+        assertThat(container.resolve(Shared.class), sameInstance(shared));
+    }
+}
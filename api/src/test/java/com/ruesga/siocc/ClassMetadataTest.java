@@ -0,0 +1,58 @@
+package com.ruesga.siocc;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.Serializable;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+
+@RunWith(JUnit4.class)
+public class ClassMetadataTest {
+    public interface Service {
+    }
+
+    public static class Base implements Serializable {
+        @PreDestroy
+        void destroy() {
+        }
+    }
+
+    @Singleton
+    public static class ServiceImpl extends Base implements Service {
+        @Inject private Base base;
+        private Base notInjected;
+    }
+
+    public static class NonInstantiable {
+        private NonInstantiable() {
+        }
+    }
+
+    @Test
+    public void testOf() throws Exception {
+        ClassMetadata metadata = ClassMetadata.of(ServiceImpl.class);
+        assertThat(ClassMetadata.of(ServiceImpl.class), sameInstance(metadata));
+        assertThat(metadata.type(), equalTo(ServiceImpl.class));
+        assertThat(metadata.newInstance(), instanceOf(ServiceImpl.class));
+        assertThat(metadata.isSingleton(), equalTo(true));
+        assertThat(metadata.injectFields(), contains(ServiceImpl.class.getDeclaredField("base")));
+        assertThat(metadata.preDestroyMethods(), contains(Base.class.getDeclaredMethod("destroy")));
+        assertThat(metadata.supertypes(), containsInAnyOrder(
+                ServiceImpl.class, Base.class, Service.class, Serializable.class, Object.class));
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void testNewInstanceNonInstantiable() throws Exception {
+        ClassMetadata.of(NonInstantiable.class).newInstance();
+    }
+}
@@ -0,0 +1,69 @@
+package com.ruesga.siocc;
+
+import com.ruesga.siocc.resolvers.DependencyResolver;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Checks that every additional container created over the same set of classes only holds its own routes
+ * and instances. The heap allocated per container is measured by <code>FootprintBenchmark</code>.
+ */
+@RunWith(JUnit4.class)
+public class IoCFootprintTest {
+    private static final int CONTAINERS = 100;
+
+    public static class A {
+        @Inject private B b;
+        @Inject private C c;
+    }
+
+    @Singleton
+    public static class B {
+        @Inject private C c;
+    }
+
+    public static class C {
+    }
+
+    private static class TestDependencyResolver implements DependencyResolver {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T resolve(Class<T> type) {
+            try {
+                return type.equals(A.class) || type.equals(B.class) || type.equals(C.class)
+                        ? (T) ClassMetadata.of(type).newInstance() : null;
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+    }
+
+    @Test
+    public void testEntriesPerContainer() throws Exception {
+        DependencyResolver resolver = new TestDependencyResolver();
+
+        List<IoC> containers = new ArrayList<>(CONTAINERS);
+        for (int i = 0; i < CONTAINERS; i++) {
+            IoC container = IoC.create(resolver);
+            container.resolve(A.class);
+            container.resolve(A.class);
+            containers.add(container);
+        }
+
+        // A route per resolved type, plus the singleton B and its disposal entry. Nothing grows with
+        // the number of resolutions or containers
+        for (IoC container : containers) {
+            assertThat(container.entries(), equalTo(5));
+            container.close();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.ruesga.siocc;
 
 import com.ruesga.siocc.resolvers.CircularDependencyDetectedException;
+import com.ruesga.siocc.resolvers.DependencyResolutionException;
 import com.ruesga.siocc.resolvers.DependencyResolver;
 import com.ruesga.siocc.resolvers.NoDependencyResolvedException;
 import com.ruesga.siocc.resolvers.NonAccessibleFieldException;
@@ -11,15 +12,35 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 @RunWith(JUnit4.class)
 public class IoCTest {
@@ -43,6 +64,13 @@ public class IoCTest {
             }
             return null;
         }
+
+        @Override
+        public Set<Class<?>> knownTypes() {
+            Set<Class<?>> types = new HashSet<>(dependencies.keySet());
+            types.addAll(dependencies.values());
+            return types;
+        }
     }
 
     public static class A {
@@ -69,6 +97,168 @@ public class IoCTest {
         @Inject private final B b = null;
     }
 
+    public static class B2 extends B {
+    }
+
+    public static class Diamond {
+        @Inject private DiamondLeft left;
+        @Inject private DiamondRight right;
+    }
+
+    public static class DiamondLeft {
+        @Inject private DiamondBottom bottom;
+        @Inject private SharedBottom shared;
+    }
+
+    public static class DiamondRight {
+        @Inject private DiamondBottom bottom;
+        @Inject private SharedBottom shared;
+    }
+
+    public static class DiamondBottom {
+    }
+
+    @ResolutionScoped
+    public static class SharedBottom {
+    }
+
+    private static final List<String> disposed = Collections.synchronizedList(new ArrayList<>());
+
+    @Singleton
+    public static class S1 implements AutoCloseable {
+        @Inject private S2 s2;
+        @Inject private P p;
+
+        @Override
+        public void close() {
+            disposed.add("S1");
+        }
+    }
+
+    @Singleton
+    public static class S2 {
+        @PreDestroy
+        private void destroy() {
+            disposed.add("S2");
+        }
+    }
+
+    public static class P {
+        @Inject private S3 s3;
+    }
+
+    @Singleton
+    public static class S3 implements AutoCloseable {
+        @Override
+        public void close() {
+            disposed.add("S3");
+        }
+    }
+
+    @Singleton
+    public static class Hung implements AutoCloseable {
+        @Override
+        public void close() throws Exception {
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+        }
+    }
+
+    @Singleton
+    public static class Gated implements AutoCloseable {
+        private static final AtomicInteger closed = new AtomicInteger();
+
+        @Inject private Gate gate;
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+
+    public static class Gate {
+    }
+
+    private interface Barrier {
+        void await() throws Exception;
+    }
+
+    /**
+     * Resolves {@link Gated} singletons, whose {@link Gate} is only resolved once the barrier is passed.
+     */
+    private static class GatedDependencyResolver implements DependencyResolver {
+        private final Barrier barrier;
+
+        private GatedDependencyResolver(Barrier barrier) {
+            this.barrier = barrier;
+        }
+
+        @Override
+        public <T> T resolve(Class<T> type) {
+            if (type == Gated.class) {
+                return type.cast(new Gated());
+            }
+            if (type == Gate.class) {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return type.cast(new Gate());
+            }
+            return null;
+        }
+    }
+
+    public interface Store {
+    }
+
+    public static class PrimaryStore implements Store {
+    }
+
+    @Singleton
+    public static class ReplicaStore implements Store {
+    }
+
+    public static class Repository {
+        @Inject @Named("primary") private Store primary;
+        @Inject @Named("replica") private Store replica;
+        @Inject private Store store;
+    }
+
+    private static class QualifiedDependencyResolver implements DependencyResolver {
+        @Override
+        public <T> T resolve(Class<T> type) {
+            return type.equals(Repository.class) ? type.cast(new Repository()) : null;
+        }
+
+        @Override
+        public <T> T resolve(Key<T> key) {
+            if (key.equals(Key.of(Store.class, "primary"))) {
+                return key.type().cast(new PrimaryStore());
+            }
+            if (key.equals(Key.of(Store.class, "replica"))) {
+                return key.type().cast(new ReplicaStore());
+            }
+            return DependencyResolver.super.resolve(key);
+        }
+    }
+
+    private static final List<String> initialized = Collections.synchronizedList(new ArrayList<>());
+
+    public static class Preloaded {
+        static {
+            initialized.add("Preloaded");
+        }
+
+        @Inject private PreloadedDependency dependency;
+    }
+
+    public static class PreloadedDependency {
+        static {
+            initialized.add("PreloadedDependency");
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static TestDependencyResolver createDependencyResolver() {
         return new TestDependencyResolver(
@@ -76,7 +266,17 @@ public class IoCTest {
                 new Pair<>(A_bad.class, A_bad.class),
                 new Pair<>(B.class, B.class),
                 new Pair<>(C.class, C.class),
-                new Pair<>(E.class, E.class));
+                new Pair<>(E.class, E.class),
+                new Pair<>(S1.class, S1.class),
+                new Pair<>(S2.class, S2.class),
+                new Pair<>(S3.class, S3.class),
+                new Pair<>(P.class, P.class),
+                new Pair<>(Hung.class, Hung.class),
+                new Pair<>(Diamond.class, Diamond.class),
+                new Pair<>(DiamondLeft.class, DiamondLeft.class),
+                new Pair<>(DiamondRight.class, DiamondRight.class),
+                new Pair<>(DiamondBottom.class, DiamondBottom.class),
+                new Pair<>(SharedBottom.class, SharedBottom.class));
     }
 
     @Test
@@ -90,6 +290,541 @@ public class IoCTest {
         assertThat(a.c, nullValue());
     }
 
+    @Test
+    public void testResolveQualified() throws Exception {
+        IoC container = IoC.create(new QualifiedDependencyResolver());
+        Repository repository = container.resolve(Repository.class);
+        assertThat(repository.primary, instanceOf(PrimaryStore.class));
+        assertThat(repository.replica, instanceOf(ReplicaStore.class));
+        assertThat(repository.store, nullValue());
+
+        // Singletons are kept per key
+        assertThat(container.resolve(Key.of(Store.class, "replica")), sameInstance(repository.replica));
+        assertThat(container.resolve(Key.of(Store.class, "primary")), not(sameInstance(repository.primary)));
+        assertThat(container.resolve(Store.class), nullValue());
+        assertThat(container.resolveMany(Repository.class, 2).get(1).replica, sameInstance(repository.replica));
+    }
+
+    @Test
+    public void testResolveMany() throws Exception {
+        IoC container = IoC.create(createDependencyResolver());
+        List<A> as = container.resolveMany(A.class, 3);
+        assertThat(as, hasSize(3));
+        for (A a : as) {
+            assertThat(a.b, instanceOf(B.class));
+            assertThat(a.c, nullValue());
+        }
+        assertThat(as.get(0), not(sameInstance(as.get(1))));
+        assertThat(as.get(0).b, not(sameInstance(as.get(1).b)));
+
+        // Singletons are shared, resolution scoped instances only within an instance
+        List<P> ps = container.resolveMany(P.class, 2);
+        assertThat(ps.get(0).s3, sameInstance(ps.get(1).s3));
+        assertThat(ps.get(0).s3, sameInstance(container.resolve(S3.class)));
+        List<Diamond> diamonds = new ArrayList<>();
+        container.resolveMany(Diamond.class, 2L, diamonds::add);
+        assertThat(diamonds.get(0).left.shared, sameInstance(diamonds.get(0).right.shared));
+        assertThat(diamonds.get(1).left.shared, sameInstance(diamonds.get(1).right.shared));
+        assertThat(diamonds.get(0).left.shared, not(sameInstance(diamonds.get(1).left.shared)));
+        assertThat(diamonds.get(1).left.bottom, not(sameInstance(diamonds.get(1).right.bottom)));
+
+        assertThat(container.resolveMany(D.class, 2), contains(nullValue(), nullValue()));
+        assertThat(container.resolveMany(A.class, 0), hasSize(0));
+    }
+
+    @Test(expected = CircularDependencyDetectedException.class)
+    public void testResolveManyCircularDependency() throws Exception {
+        Configuration configuration = new Configuration.Builder()
+                .circularDependencyStrategy(Configuration.CircularDependencyStrategy.THROW)
+                .build();
+        IoC container = IoC.create(configuration, createDependencyResolver());
+        container.resolveMany(A_bad.class, 2);
+        Assert.fail();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFactoryFor() throws Exception {
+        IoC container = IoC.create(createDependencyResolver());
+        Factory<A> as = container.factoryFor(A.class);
+        A a1 = as.get();
+        A a2 = as.get();
+        assertThat(a1, not(sameInstance(a2)));
+        assertThat(a2.b, instanceOf(B.class));
+        assertThat(a1.b, not(sameInstance(a2.b)));
+
+        // Singletons are shared with the container
+        Factory<P> ps = container.factoryFor(P.class);
+        assertThat(ps.get().s3, sameInstance(ps.get().s3));
+        assertThat(ps.get().s3, sameInstance(container.resolve(S3.class)));
+        assertThat(container.factoryFor(S3.class).get(), sameInstance(container.resolve(S3.class)));
+        assertThat(container.factoryFor(D.class).get(), nullValue());
+
+        // The plan is recompiled when the container is rebound
+        S3 s3 = ps.get().s3;
+        TestDependencyResolver resolver2 = new TestDependencyResolver(new Pair<>(B.class, B2.class));
+        container.rebind(resolver2, createDependencyResolver());
+        assertThat(as.get().b, instanceOf(B2.class));
+        assertThat(ps.get().s3, not(sameInstance(s3)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFactoryForImplementationClasses() throws Exception {
+        AtomicInteger resolved = new AtomicInteger();
+        TestDependencyResolver resolver = new TestDependencyResolver(
+                new Pair<>(A.class, A.class), new Pair<>(B.class, B.class)) {
+            @Override
+            public <T> T resolve(Class<T> type) {
+                resolved.incrementAndGet();
+                return super.resolve(type);
+            }
+
+            @Override
+            public Class<?> implementationOf(Key<?> key) {
+                return key.type().equals(B.class) ? B.class : null;
+            }
+        };
+        IoC container = IoC.create(resolver);
+        Factory<A> as = container.factoryFor(A.class);
+        A a1 = as.get();
+        int calls = resolved.get();
+
+        // B is created by the plan, so only A is resolved again
+        A a2 = as.get();
+        assertThat(resolved.get(), equalTo(calls + 1));
+        assertThat(a2.b, instanceOf(B.class));
+        assertThat(a2.b, not(sameInstance(a1.b)));
+    }
+
+    @Test
+    public void testFactoryForConcurrently() throws Exception {
+        IoC container = IoC.create(createDependencyResolver());
+        Factory<Diamond> diamonds = container.factoryFor(Diamond.class);
+        List<Diamond> results = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 1000; j++) {
+                        results.add(diamonds.get());
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(results, hasSize(4000));
+        for (Diamond diamond : results) {
+            assertThat(diamond.left.shared, sameInstance(diamond.right.shared));
+            assertThat(diamond.left.bottom, notNullValue());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFactoryForClosed() throws Exception {
+        IoC container = IoC.create(createDependencyResolver());
+        Factory<A> as = container.factoryFor(A.class);
+        container.close();
+        as.get();
+    }
+
+    @Test
+    public void testInjectMembers() throws Exception {
+        IoC container = IoC.create(createDependencyResolver());
+        A a = new A();
+        container.injectMembers(a);
+        assertThat(a.b, instanceOf(B.class));
+        assertThat(a.c, nullValue());
+
+        P p = new P();
+        container.injectMembers(p);
+        assertThat(p.s3, sameInstance(container.resolve(S3.class)));
+
+        // Classes are planned with their first instance
+        List<Object> instances = Arrays.asList(new A(), null, new Diamond(), new A(), new Diamond());
+        container.injectMembers(instances);
+        for (Object instance : instances) {
+            if (instance instanceof A) {
+                assertThat(((A) instance).b, instanceOf(B.class));
+            } else if (instance instanceof Diamond) {
+                Diamond diamond = (Diamond) instance;
+                assertThat(diamond.left.shared, sameInstance(diamond.right.shared));
+            }
+        }
+        assertThat(((Diamond) instances.get(2)).left.shared,
+                not(sameInstance(((Diamond) instances.get(4)).left.shared)));
+    }
+
+    @Test
+    public void testInjectMembersInParallel() throws Exception {
+        Configuration configuration = new Configuration.Builder()
+                .parallelInjectionThreshold(100)
+                .build();
+        IoC container = IoC.create(configuration, createDependencyResolver());
+        List<Object> instances = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            instances.add(i % 2 == 0 ? new Diamond() : new P());
+        }
+        container.injectMembers(instances);
+        S3 s3 = container.resolve(S3.class);
+        for (Object instance : instances) {
+            if (instance instanceof Diamond) {
+                Diamond diamond = (Diamond) instance;
+                assertThat(diamond.left.shared, sameInstance(diamond.right.shared));
+                assertThat(diamond.left.bottom, notNullValue());
+            } else {
+                assertThat(((P) instance).s3, sameInstance(s3));
+            }
+        }
+    }
+
+    @Test(expected = NoDependencyResolvedException.class)
+    public void testInjectMembersInParallelFailure() throws Exception {
+        Configuration configuration = new Configuration.Builder()
+                .noDependencyFoundStrategy(Configuration.NoDependencyFoundStrategy.THROW)
+                .parallelInjectionThreshold(10)
+                .build();
+        // Only the first B is resolved, so the failures happen in the worker threads
+        AtomicInteger resolved = new AtomicInteger();
+        IoC container = IoC.create(configuration, new DependencyResolver() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T resolve(Class<T> type) {
+                return type == B.class && resolved.getAndIncrement() == 0 ? (T) new B() : null;
+            }
+        });
+        List<Object> instances = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            instances.add(new A());
+        }
+        container.injectMembers(instances);
+        Assert.fail();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPreload() throws Exception {
+        Configuration configuration = new Configuration.Builder()
+                .preload(true)
+                .preloadParallelism(2)
+                .build();
+        IoC container = IoC.create(configuration, new TestDependencyResolver(
+                new Pair<>(Preloaded.class, Preloaded.class)));
+        container.warmUp().get(10, TimeUnit.SECONDS);
+
+        // Both the known type and the types of its injected fields are initialized
+        assertThat(initialized, containsInAnyOrder("Preloaded", "PreloadedDependency"));
+        assertThat(IoC.create(createDependencyResolver()).warmUp().isDone(), equalTo(true));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPreloadInBackground() throws Exception {
+        Configuration configuration = new Configuration.Builder()
+                .preload(true)
+                .build();
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        DependencyResolver failing = new DependencyResolver() {
+            @Override
+            public <T> T resolve(Class<T> type) {
+                return null;
+            }
+
+            @Override
+            public Set<Class<?>> knownTypes() {
+                threads.add(Thread.currentThread().getName());
+                throw new IllegalStateException("Can't enumerate");
+            }
+        };
+        IoC container = IoC.create(configuration, failing, new TestDependencyResolver(
+                new Pair<>(Preloaded.class, Preloaded.class)));
+
+        // The known types are enumerated by the preloader, and failures don't stop the warm-up
+        container.warmUp().get(10, TimeUnit.SECONDS);
+        assertThat(threads, hasSize(1));
+        assertThat(threads.get(0), not(equalTo(Thread.currentThread().getName())));
+        assertThat(initialized, hasItem("Preloaded"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRebind() throws Exception {
+        TestDependencyResolver resolver = createDependencyResolver();
+        IoC container = IoC.create(resolver);
+        assertThat(container.resolve(B.class), instanceOf(B.class));
+        assertThat(container.resolve(D.class), nullValue());
+
+        // Rebind every type
+        TestDependencyResolver resolver2 = new TestDependencyResolver(
+                new Pair<>(B.class, B2.class),
+                new Pair<>(D.class, D.class));
+        container.rebind(resolver2, resolver);
+        assertThat(container.resolvers(), equalTo(Arrays.asList(resolver2, resolver)));
+        assertThat(container.resolve(B.class), instanceOf(B2.class));
+        assertThat(container.resolve(D.class), instanceOf(D.class));
+        assertThat(container.resolve(A.class).b, instanceOf(B2.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRebindAffectedTypes() throws Exception {
+        TestDependencyResolver resolver = createDependencyResolver();
+        IoC container = IoC.create(resolver);
+        assertThat(container.resolve(A.class).b, not(instanceOf(B2.class)));
+        assertThat(container.resolve(C.class), instanceOf(C.class));
+
+        // Resolvers appended to the chain don't change the resolver of B, which wasn't affected
+        TestDependencyResolver resolver2 = new TestDependencyResolver(
+                new Pair<>(A.class, A.class),
+                new Pair<>(B.class, B2.class),
+                new Pair<>(D.class, D.class));
+        container.rebind(Collections.singleton(A.class), resolver, resolver2);
+        A a = container.resolve(A.class);
+        assertThat(a, notNullValue());
+        assertThat(a.b, not(instanceOf(B2.class)));
+        assertThat(container.resolve(D.class), instanceOf(D.class));
+
+        // But resolvers put before it take precedence, as the chain order says
+        container.rebind(Collections.singleton(A.class), resolver2, resolver);
+        assertThat(container.resolve(B.class), instanceOf(B2.class));
+        assertThat(container.resolve(A.class).b, instanceOf(B2.class));
+        assertThat(container.resolve(C.class), instanceOf(C.class));
+
+        // Once the previous resolver is removed from the chain, its resolutions are discarded too
+        container.rebind(Collections.emptySet(), resolver2);
+        assertThat(container.resolve(A.class).b, instanceOf(B2.class));
+        assertThat(container.resolve(C.class), nullValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRoutesPinResolvers() throws Exception {
+        AtomicBoolean enabled = new AtomicBoolean();
+        DependencyResolver dynamic = new DependencyResolver() {
+            @Override
+            public <T> T resolve(Class<T> type) {
+                return enabled.get() && type == B.class ? type.cast(new B2()) : null;
+            }
+        };
+        TestDependencyResolver resolver = createDependencyResolver();
+        IoC container = IoC.create(dynamic, resolver);
+        assertThat(container.resolve(B.class), not(instanceOf(B2.class)));
+
+        // B is routed to the second resolver until it's rebound, even if the first one now resolves it
+        enabled.set(true);
+        assertThat(container.resolve(B.class), not(instanceOf(B2.class)));
+        container.rebind(Collections.singleton(B.class), dynamic, resolver);
+        assertThat(container.resolve(B.class), instanceOf(B2.class));
+    }
+
+    @Test
+    public void testRebindSingletonDependents() throws Exception {
+        disposed.clear();
+        TestDependencyResolver resolver = createDependencyResolver();
+        IoC container = IoC.create(resolver);
+        S1 s1 = container.resolve(S1.class);
+        S2 s2 = s1.s2;
+        S3 s3 = container.resolve(S3.class);
+
+        // S1 injects a P, so it's discarded when P is rebound
+        container.rebind(Collections.singleton(P.class), resolver);
+        S1 other = container.resolve(S1.class);
+        assertThat(other, not(sameInstance(s1)));
+        assertThat(container.resolve(S2.class), sameInstance(s2));
+        assertThat(container.resolve(S3.class), sameInstance(s3));
+
+        // And when any singleton it depends on is discarded
+        container.rebind(Collections.singleton(S2.class), resolver);
+        assertThat(container.resolve(S1.class), not(sameInstance(other)));
+        assertThat(container.resolve(S1.class).s2, not(sameInstance(s2)));
+        assertThat(container.resolve(S3.class), sameInstance(s3));
+
+        // Discarded singletons may still be in use, so they are only disposed on close, once each
+        assertThat(disposed, hasSize(0));
+        container.close();
+        assertThat(disposed, hasSize(6));
+        assertThat(disposed.get(disposed.size() - 1), not(equalTo("S1")));
+        assertThat(disposed.stream().filter("S1"::equals).count(), equalTo(3L));
+        assertThat(disposed.stream().filter("S2"::equals).count(), equalTo(2L));
+    }
+
+    public static class Latched {
+        @Inject private S3 s3;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRebindDuringResolution() throws Exception {
+        disposed.clear();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DependencyResolver latched = new DependencyResolver() {
+            @Override
+            public <T> T resolve(Class<T> type) {
+                if (type != Latched.class) {
+                    return null;
+                }
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return type.cast(new Latched());
+            }
+        };
+        TestDependencyResolver resolver = createDependencyResolver();
+        IoC container = IoC.create(latched, resolver);
+        S3 s3 = container.resolve(S3.class);
+        List<Latched> results = Collections.synchronizedList(new ArrayList<>());
+        Thread thread = new Thread(() -> {
+            try {
+                results.add(container.resolve(Latched.class));
+            } catch (DependencyResolutionException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        assertThat(entered.await(10, TimeUnit.SECONDS), equalTo(true));
+
+        // S3 is discarded while the resolution is blocked, which still finishes with the previous singleton
+        container.rebind(Collections.singleton(S3.class), latched, resolver);
+        release.countDown();
+        thread.join();
+        assertThat(results.get(0).s3, sameInstance(s3));
+        assertThat(container.resolve(S3.class), not(sameInstance(s3)));
+        assertThat(disposed, hasSize(0));
+
+        container.close();
+        assertThat(disposed, contains("S3", "S3"));
+    }
+
+    @Test
+    public void testSingletonsBuiltConcurrently() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IoC container = IoC.create(new GatedDependencyResolver(() -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+        }), createDependencyResolver());
+        Thread thread = new Thread(() -> {
+            try {
+                container.resolve(Gated.class);
+            } catch (DependencyResolutionException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        assertThat(entered.await(10, TimeUnit.SECONDS), equalTo(true));
+
+        // Other singletons are created while the gated one is still being built
+        assertThat(container.resolve(S3.class), notNullValue());
+        assertThat(thread.isAlive(), equalTo(true));
+        release.countDown();
+        thread.join();
+    }
+
+    @Test
+    public void testSingletonRace() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        IoC container = IoC.create(new GatedDependencyResolver(() -> barrier.await(10, TimeUnit.SECONDS)));
+        Gated.closed.set(0);
+        List<Gated> results = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    results.add(container.resolve(Gated.class));
+                } catch (DependencyResolutionException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Both threads built a singleton, but only the published one is kept. The other one is disposed
+        assertThat(results, hasSize(2));
+        assertThat(results.get(0), sameInstance(results.get(1)));
+        assertThat(Gated.closed.get(), equalTo(1));
+        container.close();
+        assertThat(Gated.closed.get(), equalTo(2));
+    }
+
+    @Test
+    public void testResolutionScoped() throws Exception {
+        Configuration configuration = new Configuration.Builder()
+                .circularDependencyStrategy(Configuration.CircularDependencyStrategy.THROW)
+                .build();
+        IoC container = IoC.create(configuration, createDependencyResolver());
+        Diamond diamond = container.resolve(Diamond.class);
+
+        // Diamonds aren't circular dependencies
+        assertThat(diamond.left.bottom, notNullValue());
+        assertThat(diamond.right.bottom, notNullValue());
+        assertThat(diamond.left.bottom, not(sameInstance(diamond.right.bottom)));
+
+        // Resolution scoped instances are shared by the whole graph, but not across resolutions
+        assertThat(diamond.left.shared, notNullValue());
+        assertThat(diamond.left.shared, sameInstance(diamond.right.shared));
+        assertThat(container.resolve(Diamond.class).left.shared, not(sameInstance(diamond.left.shared)));
+    }
+
+    @Test
+    public void testSingleton() throws Exception {
+        IoC container = IoC.create(createDependencyResolver());
+        S1 s1 = container.resolve(S1.class);
+        assertThat(s1, notNullValue());
+        assertThat(container.resolve(S1.class), sameInstance(s1));
+        assertThat(container.resolve(S2.class), sameInstance(s1.s2));
+        assertThat(container.resolve(P.class), not(sameInstance(s1.p)));
+        assertThat(container.resolve(P.class).s3, sameInstance(s1.p.s3));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        disposed.clear();
+        IoC container = IoC.create(createDependencyResolver());
+        container.resolve(S1.class);
+        container.close();
+
+        // S1 depends on S2 (directly) and S3 (through P), so it must be disposed first
+        assertThat(disposed, hasSize(3));
+        assertThat(disposed.get(0), equalTo("S1"));
+        assertThat(disposed, containsInAnyOrder("S1", "S2", "S3"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testResolveAfterClose() throws Exception {
+        IoC container = IoC.create(createDependencyResolver());
+        container.close();
+        container.resolve(A.class);
+        Assert.fail();
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseDeadline() throws Exception {
+        disposed.clear();
+        Configuration configuration = new Configuration.Builder()
+                .disposeParallelism(2)
+                .disposeTimeout(100, TimeUnit.MILLISECONDS)
+                .build();
+        IoC container = IoC.create(configuration, createDependencyResolver());
+        container.resolve(Hung.class);
+        container.resolve(S3.class);
+        container.close();
+        assertThat(disposed, contains("S3"));
+    }
+
     @Test
     public void testUnresolvedDependencyNullStrategy() throws Exception {
         Configuration configuration = new Configuration.Builder()
@@ -0,0 +1,66 @@
+package com.ruesga.siocc;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Qualifier;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+@RunWith(JUnit4.class)
+public class KeyTest {
+    @Qualifier
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Fast {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface NotQualifier {
+    }
+
+    public static class Target {
+        @Inject @Named("primary") private String primary;
+        @Inject @Fast private String fast;
+        @Inject @NotQualifier private String plain;
+    }
+
+    @Test
+    public void testEquals() {
+        assertThat(Key.of(String.class), equalTo(Key.of(String.class)));
+        assertThat(Key.of(String.class, "primary"), equalTo(Key.of(String.class, "primary")));
+        assertThat(Key.of(String.class, "primary").hashCode(), equalTo(Key.of(String.class, "primary").hashCode()));
+        assertThat(Key.of(String.class, "primary"), not(equalTo(Key.of(String.class, "replica"))));
+        assertThat(Key.of(String.class, "primary"), not(equalTo(Key.of(Object.class, "primary"))));
+        assertThat(Key.of(String.class, "primary"), not(equalTo(Key.of(String.class))));
+        assertThat(Key.of(String.class, "primary").withType(Object.class), equalTo(Key.of(Object.class, "primary")));
+    }
+
+    @Test
+    public void testInjectKeys() throws Exception {
+        ClassMetadata metadata = ClassMetadata.of(Target.class);
+        assertThat(metadata.injectKeys().get(0), equalTo(Key.of(String.class, "primary")));
+        assertThat(metadata.injectKeys().get(1),
+                equalTo(Key.of(String.class, Target.class.getDeclaredField("fast").getAnnotation(Fast.class))));
+        assertThat(metadata.injectKeys().get(1).qualifier().annotationType(), equalTo(Fast.class));
+        assertThat(metadata.injectKeys().get(2), equalTo(Key.of(String.class)));
+        assertThat(metadata.injectKeys().get(2).qualifier(), nullValue());
+
+        // A @Named annotation is equal to the names created by the keys
+        Named named = Target.class.getDeclaredField("primary").getAnnotation(Named.class);
+        assertThat(Key.of(String.class, "primary").qualifier(), equalTo(named));
+        assertThat(Key.of(String.class, "primary").qualifier().hashCode(), equalTo(named.hashCode()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotQualifier() throws Exception {
+        Key.of(String.class, Target.class.getDeclaredField("plain").getAnnotation(NotQualifier.class));
+    }
+}
@@ -0,0 +1,75 @@
+package com.ruesga.siocc;
+
+import com.ruesga.siocc.resolvers.DependencyResolver;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.inject.Inject;
+import java.io.StringWriter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+@RunWith(JUnit4.class)
+public class TracerTest {
+    public static class A {
+        @Inject private B b;
+    }
+
+    public static class B {
+    }
+
+    private static class TestDependencyResolver implements DependencyResolver {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T resolve(Class<T> type) {
+            if (type.equals(A.class)) {
+                return (T) new A();
+            }
+            if (type.equals(B.class)) {
+                return (T) new B();
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void testWriteChromeTrace() throws Exception {
+        Tracer tracer = new Tracer();
+        Configuration configuration = new Configuration.Builder()
+                .tracer(tracer)
+                .build();
+        IoC container = IoC.create(configuration, new TestDependencyResolver());
+        container.resolve(A.class);
+
+        StringWriter writer = new StringWriter();
+        tracer.writeChromeTrace(writer);
+        String trace = writer.toString();
+        assertThat(trace.startsWith("{\"traceEvents\":["), equalTo(true));
+        assertThat(trace, containsString("\"name\":\"thread_name\""));
+        assertThat(trace, containsString("\"name\":\"" + A.class.getName() + "\",\"cat\":\"resolve\""));
+        assertThat(trace, containsString("\"name\":\"" + A.class.getName() + "\",\"cat\":\"lookup\""));
+        assertThat(trace, containsString("\"name\":\"b\",\"cat\":\"inject\""));
+        assertThat(trace, containsString("\"name\":\"" + B.class.getName() + "\",\"cat\":\"resolve\""));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        Tracer.DISABLED.begin("test", "span").close();
+
+        // Names are only formatted when recorded
+        Tracer.DISABLED.begin("test", new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("Formatted by a disabled tracer");
+            }
+        }).close();
+
+        StringWriter writer = new StringWriter();
+        Tracer.DISABLED.writeChromeTrace(writer);
+        assertThat(writer.toString(), not(containsString("\"ph\":\"X\"")));
+    }
+}
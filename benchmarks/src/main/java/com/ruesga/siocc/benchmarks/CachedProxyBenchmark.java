@@ -0,0 +1,85 @@
+package com.ruesga.siocc.benchmarks;
+
+import com.ruesga.siocc.Cached;
+import com.ruesga.siocc.IoC;
+import com.ruesga.siocc.resolvers.BasicDependencyResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the {@link Cached} proxies: a direct call to the implementation, a call to a
+ * method that isn't cached through the proxy, and a call to a cached method through the proxy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CachedProxyBenchmark {
+    public interface Service {
+        @Cached
+        long cached(int value);
+
+        long uncached(int value);
+    }
+
+    public static class ServiceImpl implements Service {
+        @Override
+        public long cached(int value) {
+            return compute(value);
+        }
+
+        @Override
+        public long uncached(int value) {
+            return compute(value);
+        }
+
+        private static long compute(int value) {
+            // An expensive pure function
+            long result = value;
+            for (int i = 0; i < 1000; i++) {
+                result = result * 31 + i;
+            }
+            return result;
+        }
+    }
+
+    private Service direct;
+    private Service proxied;
+    private int value = 42;
+
+    @Setup
+    public void setup() throws Exception {
+        direct = new ServiceImpl();
+        IoC container = IoC.create(new BasicDependencyResolver.Builder()
+                .register(Service.class, ServiceImpl.class)
+                .build());
+        proxied = container.resolve(Service.class);
+    }
+
+    @Benchmark
+    public long direct() {
+        return direct.uncached(value);
+    }
+
+    @Benchmark
+    public long proxiedUncached() {
+        return proxied.uncached(value);
+    }
+
+    @Benchmark
+    public long proxiedCached() {
+        return proxied.cached(value);
+    }
+}
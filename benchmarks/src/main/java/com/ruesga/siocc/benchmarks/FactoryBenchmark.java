@@ -0,0 +1,79 @@
+package com.ruesga.siocc.benchmarks;
+
+import com.ruesga.siocc.Factory;
+import com.ruesga.siocc.IoC;
+import com.ruesga.siocc.resolvers.BasicDependencyResolver;
+import com.ruesga.siocc.resolvers.DependencyResolutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares creating an instance with a hand-wired constructor call, with {@link IoC#resolve(Class)} and with
+ * a {@link Factory} returned by {@link IoC#factoryFor(Class)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactoryBenchmark {
+    public interface Handler {
+    }
+
+    public static class HandlerImpl implements Handler {
+        @Inject Parser parser;
+        @Inject Settings settings;
+    }
+
+    public static class Parser {
+    }
+
+    @Singleton
+    public static class Settings {
+    }
+
+    private final Settings settings = new Settings();
+    private IoC container;
+    private Factory<Handler> factory;
+
+    @Setup
+    public void setup() throws Exception {
+        container = IoC.create(new BasicDependencyResolver.Builder()
+                .register(Handler.class, HandlerImpl.class)
+                .register(Parser.class)
+                .register(Settings.class)
+                .build());
+        factory = container.factoryFor(Handler.class);
+    }
+
+    @Benchmark
+    public Handler handWired() {
+        HandlerImpl handler = new HandlerImpl();
+        handler.parser = new Parser();
+        handler.settings = settings;
+        return handler;
+    }
+
+    @Benchmark
+    public Handler resolve() throws DependencyResolutionException {
+        return container.resolve(Handler.class);
+    }
+
+    @Benchmark
+    public Handler factory() throws DependencyResolutionException {
+        return factory.get();
+    }
+}
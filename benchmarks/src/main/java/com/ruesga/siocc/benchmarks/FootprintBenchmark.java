@@ -0,0 +1,72 @@
+package com.ruesga.siocc.benchmarks;
+
+import com.ruesga.siocc.IoC;
+import com.ruesga.siocc.resolvers.BasicDependencyResolver;
+import com.ruesga.siocc.resolvers.DependencyResolutionException;
+import com.ruesga.siocc.resolvers.DependencyResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of an additional container created over an already used set of classes: creating it and
+ * resolving a small graph, which fills its routes and singletons. Run it with the GC profiler to get the
+ * bytes allocated per container (<code>gc.alloc.rate.norm</code>):
+ * <pre>
+ * ./gradlew :benchmarks:jmh -Pinclude=Footprint -Pprof=gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FootprintBenchmark {
+
+    public static class A {
+        @Inject B b;
+        @Inject C c;
+    }
+
+    @Singleton
+    public static class B {
+        @Inject C c;
+    }
+
+    public static class C {
+    }
+
+    private DependencyResolver resolver;
+
+    @Setup
+    public void setup() throws Exception {
+        resolver = new BasicDependencyResolver.Builder()
+                .register(A.class)
+                .register(B.class)
+                .register(C.class)
+                .build();
+        // Fill the shared class metadata
+        try (IoC container = IoC.create(resolver)) {
+            container.resolve(A.class);
+        }
+    }
+
+    @Benchmark
+    public IoC container() throws DependencyResolutionException {
+        IoC container = IoC.create(resolver);
+        container.resolve(A.class);
+        return container;
+    }
+}
@@ -0,0 +1,95 @@
+package com.ruesga.siocc.benchmarks;
+
+import com.ruesga.siocc.IoC;
+import com.ruesga.siocc.resolvers.BasicDependencyResolver;
+import com.ruesga.siocc.resolvers.DependencyResolutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a batch of prototype instances with a tight <code>new</code> loop, with a loop of
+ * {@link IoC#resolve(Class)} calls and with {@link IoC#resolveMany(Class, long, java.util.function.Consumer)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveManyBenchmark {
+    private static final int BATCH = 1000;
+
+    public interface Handler {
+    }
+
+    public static class HandlerImpl implements Handler {
+        @Inject Parser parser;
+        @Inject Formatter formatter;
+    }
+
+    public static class Parser {
+        @Inject Settings settings;
+    }
+
+    public static class Formatter {
+        @Inject Settings settings;
+    }
+
+    @Singleton
+    public static class Settings {
+    }
+
+    private final Settings settings = new Settings();
+    private IoC container;
+
+    @Setup
+    public void setup() throws Exception {
+        container = IoC.create(new BasicDependencyResolver.Builder()
+                .register(Handler.class, HandlerImpl.class)
+                .register(Parser.class)
+                .register(Formatter.class)
+                .register(Settings.class)
+                .build());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void newLoop(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            HandlerImpl handler = new HandlerImpl();
+            handler.parser = new Parser();
+            handler.parser.settings = settings;
+            handler.formatter = new Formatter();
+            handler.formatter.settings = settings;
+            blackhole.consume(handler);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void resolveLoop(Blackhole blackhole) throws DependencyResolutionException {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(container.resolve(Handler.class));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void resolveMany(Blackhole blackhole) throws DependencyResolutionException {
+        container.resolveMany(Handler.class, BATCH, blackhole::consume);
+    }
+}
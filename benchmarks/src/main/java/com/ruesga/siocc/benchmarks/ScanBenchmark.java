@@ -0,0 +1,72 @@
+package com.ruesga.siocc.benchmarks;
+
+import com.ruesga.siocc.ClassMetadata;
+import com.ruesga.siocc.resolvers.AnnotationDependencyResolver;
+import com.ruesga.siocc.resolvers.IoCDependency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reflections.Reflections;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cold start of an {@link AnnotationDependencyResolver} with the <code>Reflections</code> scan
+ * it used before (which loads every annotated class and indexes it by its supertypes). Every measurement
+ * runs in a fresh JVM, so it includes class loading and the interpreted execution of both scanners.
+ * <p>
+ * The <code>com.ruesga.siocc</code> package spans the benchmark classes directory and the container jars,
+ * while <code>org.openjdk.jmh</code> scans a large jar without annotated classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class ScanBenchmark {
+    public interface Service {
+    }
+
+    @IoCDependency
+    public static class ServiceImpl implements Service {
+    }
+
+    @IoCDependency
+    public static class Worker implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    @Param({"com.ruesga.siocc", "org.openjdk.jmh"})
+    public String pkg;
+
+    @Setup
+    public void setup() {
+        // Both scanners log. Keep the logging backend startup out of the measurement
+        LoggerFactory.getLogger(ScanBenchmark.class);
+    }
+
+    @Benchmark
+    public void scanner(Blackhole blackhole) {
+        blackhole.consume(new AnnotationDependencyResolver.Builder().scan(pkg).build());
+    }
+
+    @Benchmark
+    public void reflections(Blackhole blackhole) {
+        for (Class<?> dependency : new Reflections(pkg).getTypesAnnotatedWith(IoCDependency.class)) {
+            blackhole.consume(ClassMetadata.of(dependency).supertypes());
+        }
+    }
+}
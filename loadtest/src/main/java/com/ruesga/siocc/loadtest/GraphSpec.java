@@ -0,0 +1,158 @@
+package com.ruesga.siocc.loadtest;
+
+/**
+ * The shape of a synthetic class graph generated by {@link SyntheticGraph}.
+ * <p>
+ * Classes are distributed in <code>depth</code> layers. Every class injects <code>fanOut</code> classes of the
+ * next layer and, with a probability of <code>cycleDensity</code>, a class of its own or a previous layer
+ * (creating a cycle).
+ * <p>
+ * In order to create a new {@link GraphSpec} reference, developers must use the {@link Builder} class.
+ *
+ * @see SyntheticGraph
+ */
+public class GraphSpec {
+    /**
+     * A builder for creating {@link GraphSpec} classes.
+     */
+    public static class Builder {
+        private GraphSpec spec;
+
+        /**
+         * Creates a new {@link GraphSpec.Builder} reference.
+         */
+        public Builder() {
+            this.spec = new GraphSpec();
+        }
+
+        /**
+         * Sets the number of classes of the graph. Defaults to 1000.
+         *
+         * @param size the number of classes.
+         * @return the own builder's reference.
+         */
+        public Builder size(int size) {
+            this.spec.size = size;
+            return this;
+        }
+
+        /**
+         * Sets the number of layers of the graph. Defaults to 6.
+         *
+         * @param depth the number of layers.
+         * @return the own builder's reference.
+         */
+        public Builder depth(int depth) {
+            this.spec.depth = depth;
+            return this;
+        }
+
+        /**
+         * Sets the number of injected classes of every class. Defaults to 3.
+         *
+         * @param fanOut the number of injected classes.
+         * @return the own builder's reference.
+         */
+        public Builder fanOut(int fanOut) {
+            this.spec.fanOut = fanOut;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a class to inject a class of its own or a previous layer. Defaults to 0.
+         *
+         * @param cycleDensity the probability, between 0 and 1.
+         * @return the own builder's reference.
+         */
+        public Builder cycleDensity(double cycleDensity) {
+            this.spec.cycleDensity = cycleDensity;
+            return this;
+        }
+
+        /**
+         * Sets the seed of the random generator, so graphs can be reproduced. Defaults to 0.
+         *
+         * @param seed the seed.
+         * @return the own builder's reference.
+         */
+        public Builder seed(long seed) {
+            this.spec.seed = seed;
+            return this;
+        }
+
+        /**
+         * Creates and returns a new {@link GraphSpec} reference.
+         *
+         * @return a new {@link GraphSpec} reference.
+         */
+        public GraphSpec build() {
+            if (spec.size < spec.depth || spec.depth <= 0) {
+                throw new IllegalArgumentException("size must be greater or equal than depth, and depth positive");
+            }
+            if (spec.fanOut < 0 || spec.cycleDensity < 0 || spec.cycleDensity > 1) {
+                throw new IllegalArgumentException("fanOut must be positive and cycleDensity between 0 and 1");
+            }
+            return spec;
+        }
+    }
+
+    private int size = 1000;
+    private int depth = 6;
+    private int fanOut = 3;
+    private double cycleDensity = 0;
+    private long seed = 0;
+
+    private GraphSpec() {
+    }
+
+    /**
+     * Returns the number of classes of the graph.
+     *
+     * @return the number of classes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of layers of the graph.
+     *
+     * @return the number of layers.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Returns the number of injected classes of every class.
+     *
+     * @return the number of injected classes.
+     */
+    public int fanOut() {
+        return fanOut;
+    }
+
+    /**
+     * Returns the probability of a class to inject a class of its own or a previous layer.
+     *
+     * @return the probability.
+     */
+    public double cycleDensity() {
+        return cycleDensity;
+    }
+
+    /**
+     * Returns the seed of the random generator.
+     *
+     * @return the seed.
+     */
+    public long seed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d, depth=%d, fanOut=%d, cycleDensity=%.3f, seed=%d",
+                size, depth, fanOut, cycleDensity, seed);
+    }
+}
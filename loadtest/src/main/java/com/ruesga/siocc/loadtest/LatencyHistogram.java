@@ -0,0 +1,100 @@
+package com.ruesga.siocc.loadtest;
+
+/**
+ * A log-linear histogram of latencies in nanoseconds, with a relative precision of ~6%.
+ * <p>
+ * Recording is allocation-free but not thread-safe, so every thread records in its own histogram, and
+ * histograms are {@link #merge(LatencyHistogram) merged} once the test finished.
+ */
+public class LatencyHistogram {
+    // Values below 32 are recorded exactly. Above it, every power of 2 is split in 16 linear buckets
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private final long[] counts = new long[SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS];
+    private long total;
+    private long max;
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[indexOf(value)]++;
+        total++;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all the latencies recorded by other histogram to this one.
+     *
+     * @param other the other histogram.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return the number of recorded latencies.
+     */
+    public long count() {
+        return total;
+    }
+
+    /**
+     * Returns the maximum recorded latency.
+     *
+     * @return the maximum latency in nanoseconds.
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * Returns the latency at the passed percentile.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the latency in nanoseconds (the upper bound of its bucket).
+     */
+    public long percentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100d * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(max, upperBoundOf(i));
+            }
+        }
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> exponent) - HALF_SUB_BUCKETS;
+        return SUB_BUCKETS + (exponent - 1) * HALF_SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        int subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((long) (subBucket + 1) << exponent) - 1;
+    }
+}
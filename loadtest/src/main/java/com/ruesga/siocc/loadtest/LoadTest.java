@@ -0,0 +1,366 @@
+package com.ruesga.siocc.loadtest;
+
+import com.ruesga.siocc.IoC;
+import com.ruesga.siocc.resolvers.AnnotationDependencyResolver;
+import com.ruesga.siocc.resolvers.BasicDependencyResolver;
+import com.ruesga.siocc.resolvers.DependencyResolver;
+import com.ruesga.siocc.resolvers.NonInstantiableClassException;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A macro load test that hammers {@link IoC#resolve(Class)} from many threads over a {@link SyntheticGraph},
+ * and reports the throughput, the latency percentiles and the time spent in garbage collection.
+ * <p>
+ * In order to create a new {@link LoadTest} reference, developers must use the {@link Builder} class.
+ * <pre>
+ *     SyntheticGraph graph = SyntheticGraph.generate(new GraphSpec.Builder().size(10000).build());
+ *     LoadTest.Report report = new LoadTest.Builder()
+ *             .resolver(LoadTest.ResolverType.ANNOTATION)
+ *             .threads(64)
+ *             .duration(30, TimeUnit.SECONDS)
+ *             .build()
+ *             .run(graph);
+ *     System.out.println(report);
+ * </pre>
+ * It can also be run from the command line (see {@link #main(String[])}).
+ *
+ * @see SyntheticGraph
+ */
+public class LoadTest {
+    /**
+     * The resolver used to wire the synthetic graph.
+     */
+    public enum ResolverType {BASIC, ANNOTATION}
+
+    /**
+     * A builder for creating {@link LoadTest} classes.
+     */
+    public static class Builder {
+        private LoadTest test;
+
+        /**
+         * Creates a new {@link LoadTest.Builder} reference.
+         */
+        public Builder() {
+            this.test = new LoadTest();
+        }
+
+        /**
+         * Sets the resolver used to wire the graph. Defaults to {@link ResolverType#BASIC}.
+         *
+         * @param resolver the resolver type.
+         * @return the own builder's reference.
+         */
+        public Builder resolver(ResolverType resolver) {
+            this.test.resolver = resolver;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads resolving types. Defaults to the number of available processors.
+         *
+         * @param threads the number of threads.
+         * @return the own builder's reference.
+         */
+        public Builder threads(int threads) {
+            this.test.threads = threads;
+            return this;
+        }
+
+        /**
+         * Uses virtual threads instead of platform threads. Virtual threads require a Java 21+ runtime.
+         *
+         * @param virtual <code>true</code> to use virtual threads.
+         * @return the own builder's reference.
+         */
+        public Builder virtualThreads(boolean virtual) {
+            this.test.virtual = virtual;
+            return this;
+        }
+
+        /**
+         * Sets the warm-up time, whose results are discarded. Defaults to 5 seconds.
+         *
+         * @param time the warm-up time.
+         * @param unit the unit of the warm-up time.
+         * @return the own builder's reference.
+         */
+        public Builder warmup(long time, TimeUnit unit) {
+            this.test.warmupNanos = unit.toNanos(time);
+            return this;
+        }
+
+        /**
+         * Sets the measured time. Defaults to 30 seconds.
+         *
+         * @param time the measured time.
+         * @param unit the unit of the measured time.
+         * @return the own builder's reference.
+         */
+        public Builder duration(long time, TimeUnit unit) {
+            this.test.durationNanos = unit.toNanos(time);
+            return this;
+        }
+
+        /**
+         * Creates and returns a new {@link LoadTest} reference.
+         *
+         * @return a new {@link LoadTest} reference.
+         */
+        public LoadTest build() {
+            return test;
+        }
+    }
+
+    /**
+     * The results of a {@link LoadTest}.
+     */
+    public static class Report {
+        private final long operations;
+        private final long errors;
+        private final long nanos;
+        private final LatencyHistogram latencies;
+        private final long gcCount;
+        private final long gcMillis;
+
+        private Report(long operations, long errors, long nanos, LatencyHistogram latencies,
+                       long gcCount, long gcMillis) {
+            this.operations = operations;
+            this.errors = errors;
+            this.nanos = nanos;
+            this.latencies = latencies;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        /**
+         * Returns the number of resolutions measured.
+         *
+         * @return the number of resolutions.
+         */
+        public long operations() {
+            return operations;
+        }
+
+        /**
+         * Returns the number of resolutions that failed or returned <code>null</code>.
+         *
+         * @return the number of errors.
+         */
+        public long errors() {
+            return errors;
+        }
+
+        /**
+         * Returns the number of resolutions per second.
+         *
+         * @return the throughput.
+         */
+        public double throughput() {
+            return operations / (nanos / 1e9d);
+        }
+
+        /**
+         * Returns the latencies of the resolutions.
+         *
+         * @return the latencies histogram.
+         */
+        public LatencyHistogram latencies() {
+            return latencies;
+        }
+
+        /**
+         * Returns the number of garbage collections during the measured time.
+         *
+         * @return the number of collections.
+         */
+        public long gcCount() {
+            return gcCount;
+        }
+
+        /**
+         * Returns the time spent in garbage collection during the measured time.
+         *
+         * @return the time in milliseconds.
+         */
+        public long gcMillis() {
+            return gcMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "operations=%d, errors=%d, throughput=%.1f ops/s%n"
+                            + "latency: p50=%.1f us, p99=%.1f us, p999=%.1f us, max=%.1f us%n"
+                            + "gc: count=%d, time=%d ms (%.2f%% of the run)",
+                    operations, errors, throughput(),
+                    latencies.percentile(50) / 1e3d, latencies.percentile(99) / 1e3d,
+                    latencies.percentile(99.9) / 1e3d, latencies.max() / 1e3d,
+                    gcCount, gcMillis, gcMillis / (nanos / 1e6d) * 100);
+        }
+    }
+
+    private ResolverType resolver = ResolverType.BASIC;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean virtual;
+    private long warmupNanos = TimeUnit.SECONDS.toNanos(5);
+    private long durationNanos = TimeUnit.SECONDS.toNanos(30);
+
+    private LoadTest() {
+    }
+
+    /**
+     * Runs the load test over the passed graph.
+     *
+     * @param graph the graph.
+     * @return the results of the test.
+     * @throws Exception if the test couldn't be run.
+     */
+    public Report run(SyntheticGraph graph) throws Exception {
+        IoC container = IoC.create(createResolver(graph));
+        List<Class<?>> roots = graph.roots();
+        ExecutorService executor = createExecutor();
+        try {
+            // Warm up, discarding the results
+            execute(executor, container, roots, warmupNanos, new AtomicLong());
+
+            long gcCount = gcCount();
+            long gcMillis = gcMillis();
+            long start = System.nanoTime();
+            AtomicLong errors = new AtomicLong();
+            List<LatencyHistogram> histograms = execute(executor, container, roots, durationNanos, errors);
+            long nanos = System.nanoTime() - start;
+
+            LatencyHistogram latencies = new LatencyHistogram();
+            histograms.forEach(latencies::merge);
+            return new Report(latencies.count(), errors.get(), nanos, latencies,
+                    gcCount() - gcCount, gcMillis() - gcMillis);
+        } finally {
+            executor.shutdownNow();
+            container.close();
+        }
+    }
+
+    private List<LatencyHistogram> execute(ExecutorService executor, IoC container, List<Class<?>> roots,
+                                           long nanos, AtomicLong errors) throws Exception {
+        long deadline = System.nanoTime() + nanos;
+        List<Future<LatencyHistogram>> futures = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                LatencyHistogram histogram = new LatencyHistogram();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long now = System.nanoTime();
+                while (now < deadline) {
+                    Class<?> type = roots.get(random.nextInt(roots.size()));
+                    try {
+                        if (container.resolve(type) == null) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    long end = System.nanoTime();
+                    histogram.record(end - now);
+                    now = end;
+                }
+                return histogram;
+            }));
+        }
+        List<LatencyHistogram> histograms = new ArrayList<>(threads);
+        for (Future<LatencyHistogram> future : futures) {
+            histograms.add(future.get());
+        }
+        return histograms;
+    }
+
+    private DependencyResolver createResolver(SyntheticGraph graph) throws NonInstantiableClassException {
+        switch (resolver) {
+            case ANNOTATION:
+                return new AnnotationDependencyResolver.Builder()
+                        .scan(SyntheticGraph.PACKAGE)
+                        .classLoaders(graph.classLoader())
+                        .build();
+            case BASIC:
+            default:
+                BasicDependencyResolver.Builder builder = new BasicDependencyResolver.Builder();
+                for (Class<?> type : graph.types()) {
+                    builder.register(type);
+                }
+                return builder.build();
+        }
+    }
+
+    private ExecutorService createExecutor() throws ReflectiveOperationException {
+        if (virtual) {
+            // Use reflection, so the harness still runs on runtimes without virtual threads
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+    }
+
+    /**
+     * Generates a synthetic graph and runs a load test over it. Arguments are passed as
+     * <code>--name=value</code> pairs:
+     * <ul>
+     *     <li>graph: <code>size</code>, <code>depth</code>, <code>fanOut</code>, <code>cycleDensity</code>,
+     *     <code>seed</code> (see {@link GraphSpec}).</li>
+     *     <li>test: <code>resolver</code> (basic or annotation), <code>threads</code>, <code>virtual</code>,
+     *     <code>warmup</code> and <code>duration</code> (in seconds).</li>
+     * </ul>
+     *
+     * @param args the arguments.
+     * @throws Exception if the test couldn't be run.
+     */
+    public static void main(String[] args) throws Exception {
+        GraphSpec.Builder spec = new GraphSpec.Builder();
+        LoadTest.Builder test = new LoadTest.Builder();
+        for (String arg : args) {
+            String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+            String value = kv.length > 1 ? kv[1] : "true";
+            switch (kv[0]) {
+                case "size": spec.size(Integer.parseInt(value)); break;
+                case "depth": spec.depth(Integer.parseInt(value)); break;
+                case "fanOut": spec.fanOut(Integer.parseInt(value)); break;
+                case "cycleDensity": spec.cycleDensity(Double.parseDouble(value)); break;
+                case "seed": spec.seed(Long.parseLong(value)); break;
+                case "resolver": test.resolver(ResolverType.valueOf(value.toUpperCase(Locale.ROOT))); break;
+                case "threads": test.threads(Integer.parseInt(value)); break;
+                case "virtual": test.virtualThreads(Boolean.parseBoolean(value)); break;
+                case "warmup": test.warmup(Long.parseLong(value), TimeUnit.SECONDS); break;
+                case "duration": test.duration(Long.parseLong(value), TimeUnit.SECONDS); break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        GraphSpec graphSpec = spec.build();
+        System.out.printf("Generating synthetic graph (%s)...%n", graphSpec);
+        long start = System.nanoTime();
+        SyntheticGraph graph = SyntheticGraph.generate(graphSpec);
+        System.out.printf("Generated %d classes and %d injected fields in %d ms%n",
+                graph.types().size(), graph.edges(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        System.out.println(test.build().run(graph));
+    }
+}
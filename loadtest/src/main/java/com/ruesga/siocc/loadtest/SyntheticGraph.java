@@ -0,0 +1,211 @@
+package com.ruesga.siocc.loadtest;
+
+import com.ruesga.siocc.resolvers.IoCDependency;
+
+import javax.inject.Inject;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A synthetic graph of {@link IoCDependency} annotated classes, wired through {@link Inject} annotated fields.
+ * <p>
+ * Classes are generated as Java sources following a {@link GraphSpec}, compiled with the system Java compiler
+ * (so a JDK is required) and loaded in their own class loader. The generated files are written to a temporary
+ * directory: the sources are deleted once compiled, and the classes when the JVM exits (the class loader, and
+ * the annotation resolver scanning it, read them until then).
+ *
+ * @see GraphSpec
+ */
+public class SyntheticGraph {
+    /**
+     * The package of the generated classes.
+     */
+    public static final String PACKAGE = "com.ruesga.siocc.loadtest.generated";
+
+    private final GraphSpec spec;
+    private final ClassLoader classLoader;
+    private final List<Class<?>> types;
+    private final List<Class<?>> roots;
+    private final int edges;
+
+    private SyntheticGraph(GraphSpec spec, ClassLoader classLoader, List<Class<?>> types, int roots, int edges) {
+        this.spec = spec;
+        this.classLoader = classLoader;
+        this.types = Collections.unmodifiableList(types);
+        this.roots = Collections.unmodifiableList(types.subList(0, roots));
+        this.edges = edges;
+    }
+
+    /**
+     * Generates, compiles and loads a new synthetic graph.
+     *
+     * @param spec the shape of the graph.
+     * @return the loaded graph.
+     * @throws IOException if the classes couldn't be generated.
+     */
+    public static SyntheticGraph generate(GraphSpec spec) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("A Java compiler is required to generate synthetic graphs");
+        }
+
+        Path dir = Files.createTempDirectory("siocc-graph");
+        Path src = Files.createDirectories(dir.resolve("src").resolve(PACKAGE.replace('.', File.separatorChar)));
+        Path out = Files.createDirectories(dir.resolve("classes"));
+
+        // Generate the sources
+        Random random = new Random(spec.seed());
+        List<File> sources = new ArrayList<>(spec.size());
+        int edges = 0;
+        for (int i = 0; i < spec.size(); i++) {
+            int layer = layerOf(spec, i);
+            List<Integer> dependencies = new ArrayList<>();
+            if (layer < spec.depth() - 1) {
+                int from = firstOf(spec, layer + 1);
+                int to = firstOf(spec, layer + 2);
+                for (int j = 0; j < spec.fanOut(); j++) {
+                    dependencies.add(from + random.nextInt(to - from));
+                }
+            }
+            if (random.nextDouble() < spec.cycleDensity()) {
+                dependencies.add(random.nextInt(firstOf(spec, layer + 1)));
+            }
+            edges += dependencies.size();
+
+            Path source = src.resolve(nameOf(i) + ".java");
+            try (Writer writer = Files.newBufferedWriter(source, StandardCharsets.UTF_8)) {
+                writer.write(sourceOf(i, dependencies));
+            }
+            sources.add(source.toFile());
+        }
+
+        // Compile and load them
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(sources);
+            List<String> options = Arrays.asList("-d", out.toString(), "-proc:none", "-nowarn",
+                    "-classpath", System.getProperty("java.class.path"));
+            if (!compiler.getTask(null, fileManager, null, options, null, units).call()) {
+                throw new IOException("Failed to compile the synthetic graph");
+            }
+        } finally {
+            delete(dir.resolve("src"));
+        }
+        deleteOnExit(dir);
+        ClassLoader classLoader = new URLClassLoader(
+                new URL[]{out.toUri().toURL()}, SyntheticGraph.class.getClassLoader());
+        List<Class<?>> types = new ArrayList<>(spec.size());
+        for (int i = 0; i < spec.size(); i++) {
+            try {
+                types.add(Class.forName(PACKAGE + "." + nameOf(i), false, classLoader));
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+        return new SyntheticGraph(spec, classLoader, types, firstOf(spec, 1), edges);
+    }
+
+    /**
+     * Returns the shape of this graph.
+     *
+     * @return the shape of the graph.
+     */
+    public GraphSpec spec() {
+        return spec;
+    }
+
+    /**
+     * Returns the class loader of the generated classes.
+     *
+     * @return the class loader.
+     */
+    public ClassLoader classLoader() {
+        return classLoader;
+    }
+
+    /**
+     * Returns all the generated classes.
+     *
+     * @return an unmodifiable list of classes.
+     */
+    public List<Class<?>> types() {
+        return types;
+    }
+
+    /**
+     * Returns the generated classes of the first layer, that aren't injected by other classes (unless
+     * through a cycle).
+     *
+     * @return an unmodifiable list of classes.
+     */
+    public List<Class<?>> roots() {
+        return roots;
+    }
+
+    /**
+     * Returns the number of injected fields of the whole graph.
+     *
+     * @return the number of injected fields.
+     */
+    public int edges() {
+        return edges;
+    }
+
+    private static void delete(Path path) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            // Children first
+            for (Path p : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private static void deleteOnExit(Path path) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            // Files registered last are deleted first, so parents must be registered before their children
+            paths.forEach(p -> p.toFile().deleteOnExit());
+        }
+    }
+
+    private static int layerOf(GraphSpec spec, int i) {
+        return (int) ((long) i * spec.depth() / spec.size());
+    }
+
+    private static int firstOf(GraphSpec spec, int layer) {
+        // The first index i such as layerOf(i) >= layer
+        return (int) (((long) layer * spec.size() + spec.depth() - 1) / spec.depth());
+    }
+
+    private static String nameOf(int i) {
+        return "Node" + i;
+    }
+
+    private static String sourceOf(int i, List<Integer> dependencies) {
+        StringBuilder sb = new StringBuilder()
+                .append("package ").append(PACKAGE).append(";\n\n")
+                .append('@').append(IoCDependency.class.getName()).append('\n')
+                .append("public class ").append(nameOf(i)).append(" {\n");
+        for (int j = 0; j < dependencies.size(); j++) {
+            sb.append("    @").append(Inject.class.getName())
+                    .append(" public ").append(nameOf(dependencies.get(j))).append(" d").append(j).append(";\n");
+        }
+        return sb.append("}\n").toString();
+    }
+}
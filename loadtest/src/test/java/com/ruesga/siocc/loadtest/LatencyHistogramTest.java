@@ -0,0 +1,46 @@
+package com.ruesga.siocc.loadtest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertThat(histogram.count(), equalTo(100_000L));
+        assertThat(histogram.max(), equalTo(100_000_000L));
+        assertWithin(histogram.percentile(50), 50_000_000L);
+        assertWithin(histogram.percentile(99), 99_000_000L);
+        assertWithin(histogram.percentile(99.9), 99_900_000L);
+        assertThat(histogram.percentile(100), equalTo(100_000_000L));
+    }
+
+    @Test
+    public void testMerge() {
+        LatencyHistogram h1 = new LatencyHistogram();
+        LatencyHistogram h2 = new LatencyHistogram();
+        h1.record(10);
+        h2.record(20);
+        h2.record(30);
+        h1.merge(h2);
+        assertThat(h1.count(), equalTo(3L));
+        assertThat(h1.percentile(50), equalTo(20L));
+        assertThat(h1.max(), equalTo(30L));
+    }
+
+    private static void assertWithin(long actual, long expected) {
+        assertThat(actual, allOf(
+                greaterThanOrEqualTo(expected), lessThanOrEqualTo((long) (expected * 1.07))));
+    }
+}
@@ -0,0 +1,66 @@
+package com.ruesga.siocc.loadtest;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+
+@RunWith(JUnit4.class)
+public class LoadTestTest {
+    private static SyntheticGraph graph;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        graph = SyntheticGraph.generate(new GraphSpec.Builder()
+                .size(60)
+                .depth(3)
+                .fanOut(2)
+                .cycleDensity(0.1)
+                .seed(42)
+                .build());
+    }
+
+    @Test
+    public void testGenerate() {
+        assertThat(graph.types(), hasSize(60));
+        assertThat(graph.roots(), hasSize(20));
+        int fields = 0;
+        for (Class<?> type : graph.types()) {
+            for (Field ignored : type.getDeclaredFields()) {
+                fields++;
+            }
+        }
+        assertThat(fields, equalTo(graph.edges()));
+    }
+
+    @Test
+    public void testRunBasic() throws Exception {
+        assertRun(LoadTest.ResolverType.BASIC);
+    }
+
+    @Test
+    public void testRunAnnotation() throws Exception {
+        assertRun(LoadTest.ResolverType.ANNOTATION);
+    }
+
+    private void assertRun(LoadTest.ResolverType resolver) throws Exception {
+        LoadTest.Report report = new LoadTest.Builder()
+                .resolver(resolver)
+                .threads(2)
+                .warmup(50, TimeUnit.MILLISECONDS)
+                .duration(200, TimeUnit.MILLISECONDS)
+                .build()
+                .run(graph);
+        assertThat(report.operations(), greaterThan(0L));
+        assertThat(report.errors(), equalTo(0L));
+        assertThat(report.latencies().percentile(99), greaterThan(0L));
+    }
+}
@@ -0,0 +1,438 @@
+package com.ruesga.siocc.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * An annotation processor that generates the wiring code of the classes annotated with
+ * <code>@IoCDependency</code>, so the container doesn't need to scan the classpath or inject any field by
+ * reflection at runtime.
+ * <p>
+ * For every component, the processor generates a <code>&lt;Component&gt;_Factory</code> class in the package
+ * of the component that creates it with a direct constructor call (its <code>@Inject</code> constructor, or
+ * the no-arg one) and assigns its <code>@Inject</code> fields, honouring the <code>@Singleton</code> and
+ * <code>@ResolutionScoped</code> scopes. It also generates a <code>DependencyResolver</code>
+ * (<code>com.ruesga.siocc.generated.GeneratedDependencyResolver</code> unless the
+ * <code>siocc.resolver</code> option says otherwise) binding every component to its own type and supertypes,
+ * like the <code>AnnotationDependencyResolver</code> does:
+ * <pre>
+ *     dependencies {
+ *         annotationProcessor project(':processor')
+ *     }
+ *
+ *     compileJava {
+ *         options.compilerArgs &lt;&lt; '-Asiocc.resolver=com.example.AppDependencyResolver'
+ *     }
+ *
+ *     ...
+ *
+ *     IoC container = IoC.create(new AppDependencyResolver());
+ * </pre>
+ * The whole graph is checked while compiling. Missing or ambiguous bindings, circular dependencies and
+ * injection points the generated code can't reach (private or final fields, private constructors) are
+ * reported as compilation errors. Every injected type must be bound by a component of the same compilation,
+ * and only <code>@Named</code> qualifiers are supported.
+ * <p>
+ * The container doesn't inject the instances of the generated resolver, but it still reads the metadata of
+ * their classes by reflection (their scope, <code>@Cached</code> methods and dispose methods), once per class
+ * the first time it resolves one of them.
+ */
+@SupportedAnnotationTypes(WiringProcessor.IOC_DEPENDENCY)
+@SupportedOptions(WiringProcessor.RESOLVER_OPTION)
+public class WiringProcessor extends AbstractProcessor {
+
+    static final String IOC_DEPENDENCY = "com.ruesga.siocc.resolvers.IoCDependency";
+    static final String RESOLVER_OPTION = "siocc.resolver";
+    static final String DEFAULT_RESOLVER = "com.ruesga.siocc.generated.GeneratedDependencyResolver";
+
+    private static final String INJECT = "javax.inject.Inject";
+    private static final String NAMED = "javax.inject.Named";
+    private static final String QUALIFIER = "javax.inject.Qualifier";
+    private static final String SINGLETON = "javax.inject.Singleton";
+    private static final String RESOLUTION_SCOPED = "com.ruesga.siocc.ResolutionScoped";
+    private static final String OBJECT = "java.lang.Object";
+
+    enum Scope {
+        PROTOTYPE, SINGLETON, RESOLUTION
+    }
+
+    static class Dependency {
+        final Element element;
+        final String type;
+        final String qualifier;
+        Component target;
+
+        private Dependency(Element element, String type, String qualifier) {
+            this.element = element;
+            this.type = type;
+            this.qualifier = qualifier;
+        }
+
+        String key() {
+            return keyOf(type, qualifier);
+        }
+    }
+
+    static class Component {
+        final TypeElement element;
+        final String name;
+        final String packageName;
+        final String factoryName;
+        final Scope scope;
+        final String qualifier;
+        final List<Dependency> parameters = new ArrayList<>();
+        final Map<String, Dependency> fields = new LinkedHashMap<>();
+        // Its own type and all its supertypes but Object
+        final Set<String> types = new LinkedHashSet<>();
+        // The types bound to this component in the generated resolver
+        final Set<String> bindings = new LinkedHashSet<>();
+        int id;
+        int scopeIndex = -1;
+
+        private Component(TypeElement element, String name, String packageName, String factoryName,
+                Scope scope, String qualifier) {
+            this.element = element;
+            this.name = name;
+            this.packageName = packageName;
+            this.factoryName = factoryName;
+            this.scope = scope;
+            this.qualifier = qualifier;
+        }
+
+        String qualifiedFactoryName() {
+            return packageName + "." + factoryName;
+        }
+    }
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    private boolean valid;
+    private boolean generated;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(IOC_DEPENDENCY);
+        if (generated || annotation == null || !annotations.contains(annotation)) {
+            return false;
+        }
+
+        // The whole graph is generated at once, from the components of the first round
+        generated = true;
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        messager = processingEnv.getMessager();
+        valid = true;
+
+        List<Component> components = new ArrayList<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            Component component = component(element);
+            if (component != null) {
+                components.add(component);
+            }
+        }
+        components.sort(Comparator.comparing(c -> c.name));
+        int scoped = 0;
+        for (int i = 0; i < components.size(); i++) {
+            Component component = components.get(i);
+            component.id = i;
+            if (component.scope == Scope.RESOLUTION) {
+                component.scopeIndex = scoped++;
+            }
+        }
+
+        link(components);
+        checkCycles(components);
+        if (!valid) {
+            return false;
+        }
+
+        String resolver = processingEnv.getOptions().getOrDefault(RESOLVER_OPTION, DEFAULT_RESOLVER);
+        if (resolver.indexOf('.') == -1) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "The generated resolver " + resolver + " must be in a package");
+            return false;
+        }
+        try {
+            new WiringWriter(processingEnv.getFiler(), resolver).write(components, scoped);
+        } catch (IOException ex) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Can't write the generated wiring: " + ex.getMessage());
+        }
+        return false;
+    }
+
+    private Component component(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            error(element, "Generated wiring only supports classes annotated with @IoCDependency");
+            return null;
+        }
+        TypeElement type = (TypeElement) element;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "Abstract class %s can't be instantiated", type.getQualifiedName());
+            return null;
+        }
+        for (Element e = type; e.getKind().isClass() || e.getKind().isInterface(); e = e.getEnclosingElement()) {
+            TypeElement t = (TypeElement) e;
+            if (t.getModifiers().contains(Modifier.PRIVATE)) {
+                error(type, "Private class %s can't be instantiated by generated wiring", t.getQualifiedName());
+                return null;
+            }
+            if (t.getNestingKind() == NestingKind.MEMBER && !t.getModifiers().contains(Modifier.STATIC)
+                    && t.getKind() == ElementKind.CLASS) {
+                error(type, "Inner class %s must be static", t.getQualifiedName());
+                return null;
+            }
+            if (t.getNestingKind() == NestingKind.LOCAL || t.getNestingKind() == NestingKind.ANONYMOUS) {
+                error(type, "Local class %s can't be instantiated by generated wiring", t.getQualifiedName());
+                return null;
+            }
+        }
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        if (packageName.isEmpty()) {
+            error(type, "Class %s in the unnamed package can't be wired", type.getSimpleName());
+            return null;
+        }
+
+        String binaryName = elements.getBinaryName(type).toString();
+        String factoryName = binaryName.substring(packageName.length() + 1).replace('$', '_') + "_Factory";
+        Scope scope = hasAnnotation(type, SINGLETON) ? Scope.SINGLETON
+                : hasAnnotation(type, RESOLUTION_SCOPED) ? Scope.RESOLUTION : Scope.PROTOTYPE;
+        Component component = new Component(type, type.getQualifiedName().toString(), packageName,
+                factoryName, scope, qualifier(type));
+
+        component.types.add(component.name);
+        supertypes(type.asType(), component.types);
+
+        // Constructor
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        List<ExecutableElement> injectable = constructors.stream()
+                .filter(c -> hasAnnotation(c, INJECT))
+                .collect(Collectors.toList());
+        ExecutableElement constructor = null;
+        if (injectable.size() > 1) {
+            error(type, "Class %s has more than one @Inject constructor", component.name);
+        } else if (injectable.size() == 1) {
+            constructor = injectable.get(0);
+        } else {
+            constructor = constructors.stream()
+                    .filter(c -> c.getParameters().isEmpty())
+                    .findFirst()
+                    .orElse(null);
+            if (constructor == null) {
+                error(type, "Class %s needs a no-arg or an @Inject constructor", component.name);
+            }
+        }
+        if (constructor != null) {
+            if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                error(constructor, "The constructor of %s can't be private", component.name);
+            }
+            for (VariableElement parameter : constructor.getParameters()) {
+                Dependency dependency = dependency(parameter);
+                if (dependency != null) {
+                    component.parameters.add(dependency);
+                }
+            }
+        }
+
+        // Fields. Only the declared ones, like the container does
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (!hasAnnotation(field, INJECT)) {
+                continue;
+            }
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)
+                    || modifiers.contains(Modifier.STATIC)) {
+                error(field, "Field %s.%s must not be private, final or static to be injected by generated wiring",
+                        component.name, field.getSimpleName());
+                continue;
+            }
+            Dependency dependency = dependency(field);
+            if (dependency != null) {
+                component.fields.put(field.getSimpleName().toString(), dependency);
+            }
+        }
+        return component;
+    }
+
+    private Dependency dependency(VariableElement element) {
+        TypeMirror type = types.erasure(element.asType());
+        if (type.getKind() != TypeKind.DECLARED) {
+            error(element, "Type %s can't be injected", type);
+            return null;
+        }
+        String name = ((TypeElement) types.asElement(type)).getQualifiedName().toString();
+        return new Dependency(element, name, qualifier(element));
+    }
+
+    private void supertypes(TypeMirror type, Set<String> names) {
+        for (TypeMirror supertype : types.directSupertypes(type)) {
+            String name = ((TypeElement) types.asElement(supertype)).getQualifiedName().toString();
+            if (!name.equals(OBJECT) && names.add(name)) {
+                supertypes(supertype, names);
+            }
+        }
+    }
+
+    private void link(List<Component> components) {
+        Map<String, List<Component>> bindings = new HashMap<>();
+        for (Component component : components) {
+            for (String type : component.types) {
+                bindings.computeIfAbsent(keyOf(type, component.qualifier), k -> new ArrayList<>()).add(component);
+            }
+        }
+
+        // Ambiguous types aren't bound, but every component is at least bound to its own type unless it's extended
+        for (Component component : components) {
+            for (String type : component.types) {
+                if (bindings.get(keyOf(type, component.qualifier)).size() == 1) {
+                    component.bindings.add(type);
+                }
+            }
+        }
+
+        for (Component component : components) {
+            List<Dependency> dependencies = new ArrayList<>(component.parameters);
+            dependencies.addAll(component.fields.values());
+            for (Dependency dependency : dependencies) {
+                List<Component> candidates = bindings.get(dependency.key());
+                if (candidates == null) {
+                    error(dependency.element, "Missing binding for %s required by %s",
+                            describe(dependency.type, dependency.qualifier), component.name);
+                } else if (candidates.size() > 1) {
+                    error(dependency.element, "Ambiguous binding for %s required by %s: %s",
+                            describe(dependency.type, dependency.qualifier), component.name,
+                            candidates.stream().map(c -> c.name).collect(Collectors.joining(", ")));
+                } else {
+                    dependency.target = candidates.get(0);
+                }
+            }
+        }
+    }
+
+    private void checkCycles(List<Component> components) {
+        Map<Component, Boolean> visited = new HashMap<>();
+        for (Component component : components) {
+            checkCycles(component, visited, new ArrayDeque<>());
+        }
+    }
+
+    private void checkCycles(Component component, Map<Component, Boolean> visited, Deque<Component> path) {
+        // false while the component is being visited, true once all its dependencies were
+        Boolean done = visited.get(component);
+        if (done != null) {
+            if (!done) {
+                List<String> cycle = new ArrayList<>();
+                boolean found = false;
+                for (Iterator<Component> it = path.descendingIterator(); it.hasNext(); ) {
+                    Component c = it.next();
+                    found |= c == component;
+                    if (found) {
+                        cycle.add(c.name);
+                    }
+                }
+                cycle.add(component.name);
+                error(component.element, "Circular dependency: %s", String.join(" -> ", cycle));
+            }
+            return;
+        }
+        visited.put(component, false);
+        path.push(component);
+        for (Dependency dependency : component.parameters) {
+            if (dependency.target != null) {
+                checkCycles(dependency.target, visited, path);
+            }
+        }
+        for (Dependency dependency : component.fields.values()) {
+            if (dependency.target != null) {
+                checkCycles(dependency.target, visited, path);
+            }
+        }
+        path.pop();
+        visited.put(component, true);
+    }
+
+    private String qualifier(Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(NAMED)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value
+                        : annotation.getElementValues().entrySet()) {
+                    if (value.getKey().getSimpleName().contentEquals("value")) {
+                        return (String) value.getValue().getValue();
+                    }
+                }
+                return "";
+            }
+            if (hasAnnotation(type, QUALIFIER)) {
+                error(element, "Qualifier @%s isn't supported by generated wiring. Use @Named instead",
+                        type.getSimpleName());
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasAnnotation(Element element, String name) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String keyOf(String type, String qualifier) {
+        return qualifier == null ? type : type + "@" + qualifier;
+    }
+
+    private static String describe(String type, String qualifier) {
+        return qualifier == null ? type : "@Named(\"" + qualifier + "\") " + type;
+    }
+
+    private void error(Element element, String format, Object... args) {
+        valid = false;
+        messager.printMessage(Diagnostic.Kind.ERROR, String.format(format, args), element);
+    }
+}
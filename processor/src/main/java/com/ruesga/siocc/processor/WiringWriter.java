@@ -0,0 +1,270 @@
+package com.ruesga.siocc.processor;
+
+import com.ruesga.siocc.processor.WiringProcessor.Component;
+import com.ruesga.siocc.processor.WiringProcessor.Dependency;
+import com.ruesga.siocc.processor.WiringProcessor.Scope;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the sources of the factories and the resolver of a checked component graph.
+ */
+class WiringWriter {
+
+    private static final String HEADER = "// Generated by " + WiringProcessor.class.getName() + ". Do not edit.";
+    private static final String INJECTOR = "com.ruesga.siocc.resolvers.MembersInjector";
+
+    private final Filer filer;
+    private final String resolver;
+    private final String resolverPackage;
+    private final String resolverName;
+
+    WiringWriter(Filer filer, String resolver) {
+        this.filer = filer;
+        this.resolver = resolver;
+        this.resolverPackage = resolver.substring(0, resolver.lastIndexOf('.'));
+        this.resolverName = resolver.substring(resolver.lastIndexOf('.') + 1);
+    }
+
+    void write(List<Component> components, int scoped) throws IOException {
+        for (Component component : components) {
+            writeFactory(component);
+        }
+        writeResolver(components, scoped);
+    }
+
+    private void writeFactory(Component component) throws IOException {
+        try (PrintWriter out = new PrintWriter(filer.createSourceFile(
+                component.qualifiedFactoryName(), component.element).openWriter())) {
+            out.println(HEADER);
+            out.println("package " + component.packageName + ";");
+            out.println();
+            out.println("/**");
+            out.println(" * Creates and wires {@link " + component.name + "} instances.");
+            out.println(" */");
+            out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            out.println("public final class " + component.factoryName + " {");
+            out.println("    private " + component.factoryName + "() {");
+            out.println("    }");
+            out.println();
+
+            out.println("    public static void bind(java.util.Map<com.ruesga.siocc.Key<?>, Integer> bindings) {");
+            for (String type : component.bindings) {
+                out.println("        bindings.put(" + key(type, component.qualifier) + ", " + component.id + ");");
+            }
+            out.println("    }");
+            out.println();
+
+            out.println("    public static Object get(" + resolver + " graph, Object[] scope,");
+            out.println("            " + INJECTOR + " injector) {");
+            if (component.scope == Scope.SINGLETON) {
+                StringBuilder dependencies = new StringBuilder();
+                for (Component dependency : singletonDependencies(component)) {
+                    dependencies.append(", graph.singleton(").append(dependency.id).append(")");
+                }
+                out.println("        Object x = graph.singleton(" + component.id + ");");
+                out.println("        if (x == null) {");
+                out.println("            x = graph.singleton(" + component.id + ", () -> {");
+                out.println("                Object y = create(graph, scope, injector);");
+                out.println("                if (injector != null) {");
+                out.println("                    injector.manage(y" + dependencies + ");");
+                out.println("                }");
+                out.println("                return y;");
+                out.println("            });");
+                out.println("        }");
+                out.println("        return x;");
+            } else if (component.scope == Scope.RESOLUTION) {
+                out.println("        Object x = scope[" + component.scopeIndex + "];");
+                out.println("        if (x == null) {");
+                out.println("            x = create(graph, scope, injector);");
+                out.println("            scope[" + component.scopeIndex + "] = x;");
+                out.println("        }");
+                out.println("        return x;");
+            } else {
+                out.println("        return create(graph, scope, injector);");
+            }
+            out.println("    }");
+            out.println();
+
+            out.println("    private static Object create(" + resolver + " graph, Object[] scope,");
+            out.println("            " + INJECTOR + " injector) {");
+            StringBuilder arguments = new StringBuilder();
+            for (Dependency parameter : component.parameters) {
+                arguments.append(arguments.length() == 0 ? "" : ",")
+                        .append("\n                ")
+                        .append(instance(parameter));
+            }
+            out.println("        " + component.name + " x = new " + component.name + "(" + arguments + ");");
+            for (Map.Entry<String, Dependency> field : component.fields.entrySet()) {
+                out.println("        x." + field.getKey() + " = " + instance(field.getValue()) + ";");
+            }
+            out.println("        return x;");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private void writeResolver(List<Component> components, int scoped) throws IOException {
+        Element[] originating = components.stream().map(c -> c.element).toArray(Element[]::new);
+        try (PrintWriter out = new PrintWriter(filer.createSourceFile(resolver, originating).openWriter())) {
+            out.println(HEADER);
+            out.println("package " + resolverPackage + ";");
+            out.println();
+            out.println("/**");
+            out.println(" * A {@link com.ruesga.siocc.resolvers.DependencyResolver} that returns fully wired instances of the");
+            out.println(" * <code>@IoCDependency</code> components, created by their generated factories. Singletons are");
+            out.println(" * shared by all the resolutions of the same resolver instance, and handed to the container");
+            out.println(" * whose resolution created them, which disposes them when it's closed. The container doesn't");
+            out.println(" * inject the returned instances, but it still reads the metadata of their classes by reflection");
+            out.println(" * once.");
+            out.println(" */");
+            out.println("@SuppressWarnings(\"unchecked\")");
+            out.println("public final class " + resolverName + " implements com.ruesga.siocc.resolvers.DependencyResolver {");
+            out.println("    private static final java.util.Map<com.ruesga.siocc.Key<?>, Integer> BINDINGS =");
+            out.println("            new java.util.HashMap<>();");
+            out.println();
+            out.println("    static {");
+            for (Component component : components) {
+                out.println("        " + component.qualifiedFactoryName() + ".bind(BINDINGS);");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    private final java.util.concurrent.atomic.AtomicReferenceArray<Object> singletons =");
+            out.println("            new java.util.concurrent.atomic.AtomicReferenceArray<>(" + components.size() + ");");
+            out.println("    // Every singleton is created holding its own lock, so unrelated singletons are built");
+            out.println("    // concurrently");
+            out.println("    private final Object[] locks = new Object[" + components.size() + "];");
+            out.println();
+            out.println("    public " + resolverName + "() {");
+            out.println("        for (int i = 0; i < locks.length; i++) {");
+            out.println("            locks[i] = new Object();");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * Returns the singleton of a component, or <code>null</code> if it wasn't created yet.");
+            out.println("     */");
+            out.println("    public Object singleton(int id) {");
+            out.println("        return singletons.get(id);");
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * Returns the singleton of a component, creating it with the passed factory if it");
+            out.println("     * wasn't created yet. Once created, a singleton can't be replaced.");
+            out.println("     */");
+            out.println("    public Object singleton(int id, java.util.function.Supplier<Object> factory) {");
+            out.println("        Object x = singletons.get(id);");
+            out.println("        if (x == null) {");
+            out.println("            synchronized (locks[id]) {");
+            out.println("                x = singletons.get(id);");
+            out.println("                if (x == null) {");
+            out.println("                    x = factory.get();");
+            out.println("                    singletons.set(id, x);");
+            out.println("                }");
+            out.println("            }");
+            out.println("        }");
+            out.println("        return x;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public <T> T resolve(Class<T> type) {");
+            out.println("        return resolve(com.ruesga.siocc.Key.of(type));");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public <T> T resolve(com.ruesga.siocc.Key<T> key) {");
+            out.println("        return resolve(key, (" + INJECTOR + ") null);");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public <T> T resolve(com.ruesga.siocc.Key<T> key, " + INJECTOR + " injector) {");
+            out.println("        Integer id = BINDINGS.get(key);");
+            out.println("        if (id == null) {");
+            out.println("            return null;");
+            out.println("        }");
+            out.println("        Object[] scope = " + (scoped == 0 ? "null" : "new Object[" + scoped + "]") + ";");
+            out.println("        switch (id) {");
+            for (Component component : components) {
+                out.println("            case " + component.id + ":");
+                out.println("                return (T) " + component.qualifiedFactoryName()
+                        + ".get(this, scope, injector);");
+            }
+            out.println("            default:");
+            out.println("                return null;");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public boolean injectsMembers(com.ruesga.siocc.Key<?> key) {");
+            out.println("        return true;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.Set<Class<?>> knownTypes() {");
+            out.println("        java.util.Set<Class<?>> types = new java.util.LinkedHashSet<>();");
+            out.println("        for (com.ruesga.siocc.Key<?> key : BINDINGS.keySet()) {");
+            out.println("            types.add(key.type());");
+            out.println("        }");
+            out.println("        return types;");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private static String instance(Dependency dependency) {
+        return "(" + dependency.type + ") " + dependency.target.qualifiedFactoryName() + ".get(graph, scope, injector)";
+    }
+
+    /**
+     * Returns the singletons a component depends on, directly or through other scopes, so they are disposed
+     * after it.
+     */
+    private static Set<Component> singletonDependencies(Component component) {
+        Set<Component> singletons = new LinkedHashSet<>();
+        collectSingletons(component, singletons, new HashSet<>());
+        return singletons;
+    }
+
+    private static void collectSingletons(Component component, Set<Component> singletons, Set<Component> visited) {
+        List<Dependency> dependencies = new ArrayList<>(component.parameters);
+        dependencies.addAll(component.fields.values());
+        for (Dependency dependency : dependencies) {
+            Component target = dependency.target;
+            if (target.scope == Scope.SINGLETON) {
+                singletons.add(target);
+            } else if (visited.add(target)) {
+                collectSingletons(target, singletons, visited);
+            }
+        }
+    }
+
+    private static String key(String type, String qualifier) {
+        if (qualifier == null) {
+            return "com.ruesga.siocc.Key.of(" + type + ".class)";
+        }
+        return "com.ruesga.siocc.Key.of(" + type + ".class, \"" + escape(qualifier) + "\")";
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
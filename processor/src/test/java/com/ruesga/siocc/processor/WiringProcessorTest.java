@@ -0,0 +1,403 @@
+package com.ruesga.siocc.processor;
+
+import com.ruesga.siocc.Factory;
+import com.ruesga.siocc.IoC;
+import com.ruesga.siocc.Key;
+import com.ruesga.siocc.resolvers.DependencyResolver;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+@RunWith(JUnit4.class)
+public class WiringProcessorTest {
+
+    private static final String[] GRAPH = {
+            "package test.app;\n"
+                    + "public interface Repository {\n"
+                    + "}\n",
+            "package test.app;\n"
+                    + "public interface Sink {\n"
+                    + "}\n",
+            "package test.app;\n"
+                    + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                    + "@com.ruesga.siocc.ResolutionScoped\n"
+                    + "class Context {\n"
+                    + "}\n",
+            "package test.app;\n"
+                    + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                    + "class JdbcRepository implements Repository {\n"
+                    + "    @javax.inject.Inject Context context;\n"
+                    + "}\n",
+            "package test.app;\n"
+                    + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                    + "public class ConsoleSink implements Sink {\n"
+                    + "}\n",
+            "package test.app.audit;\n"
+                    + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                    + "@javax.inject.Named(\"audit\")\n"
+                    + "public class AuditSink implements test.app.Sink {\n"
+                    + "}\n",
+            "package test.app;\n"
+                    + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                    + "@javax.inject.Singleton\n"
+                    + "public class Service {\n"
+                    + "    final Repository repository;\n"
+                    + "    @javax.inject.Inject Context context;\n"
+                    + "    @javax.inject.Inject @javax.inject.Named(\"audit\") Sink audit;\n"
+                    + "    @javax.inject.Inject Sink sink;\n"
+                    + "    @javax.inject.Inject Service(Repository repository) {\n"
+                    + "        this.repository = repository;\n"
+                    + "    }\n"
+                    + "}\n"
+    };
+
+    private static final String[] DISPOSABLE = {
+            "package test.app;\n"
+                    + "public class Log {\n"
+                    + "    public static final java.util.List<String> CLOSED = new java.util.ArrayList<>();\n"
+                    + "}\n",
+            "package test.app;\n"
+                    + "public interface Store {\n"
+                    + "}\n",
+            "package test.app;\n"
+                    + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                    + "@javax.inject.Singleton\n"
+                    + "public class Db implements Store, AutoCloseable {\n"
+                    + "    @Override public void close() {\n"
+                    + "        Log.CLOSED.add(\"db\");\n"
+                    + "    }\n"
+                    + "}\n",
+            "package test.app;\n"
+                    + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                    + "public class Dao {\n"
+                    + "    @javax.inject.Inject Store store;\n"
+                    + "}\n",
+            "package test.app;\n"
+                    + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                    + "@javax.inject.Singleton\n"
+                    + "public class Cache {\n"
+                    + "    @javax.inject.Inject Dao dao;\n"
+                    + "    @javax.annotation.PreDestroy void flush() {\n"
+                    + "        Log.CLOSED.add(\"cache\");\n"
+                    + "    }\n"
+                    + "}\n"
+    };
+
+    private static class Result implements AutoCloseable {
+        private final boolean success;
+        private final List<String> errors;
+        private final URLClassLoader classLoader;
+        private final Path output;
+
+        private Result(boolean success, List<String> errors, URLClassLoader classLoader, Path output) {
+            this.success = success;
+            this.errors = errors;
+            this.classLoader = classLoader;
+            this.output = output;
+        }
+
+        @Override
+        public void close() throws IOException {
+            classLoader.close();
+            delete(output);
+        }
+    }
+
+    // The compiled results of the running test, closed after it
+    private final List<Result> results = new ArrayList<>();
+
+    @After
+    public void tearDown() throws IOException {
+        for (Result result : results) {
+            result.close();
+        }
+    }
+
+    @Test
+    public void testGeneratedWiring() throws Exception {
+        Result result = compile(Collections.emptyList(), GRAPH);
+        assertThat(result.errors.toString(), result.success, equalTo(true));
+
+        DependencyResolver resolver = (DependencyResolver) result.classLoader
+                .loadClass(WiringProcessor.DEFAULT_RESOLVER).newInstance();
+        Class<?> serviceType = result.classLoader.loadClass("test.app.Service");
+        assertThat(resolver.injectsMembers(Key.of(serviceType)), equalTo(true));
+        Class<?> repositoryType = result.classLoader.loadClass("test.app.Repository");
+        assertThat(resolver.knownTypes(), hasItem(serviceType));
+
+        IoC container = IoC.create(resolver);
+        Object service = container.resolve(serviceType);
+        assertThat(container.resolve(serviceType), sameInstance(service));
+        Object repository = field(service, "repository");
+        assertThat(repository.getClass().getName(), equalTo("test.app.JdbcRepository"));
+        assertThat(field(service, "audit").getClass().getName(), equalTo("test.app.audit.AuditSink"));
+        assertThat(field(service, "sink").getClass().getName(), equalTo("test.app.ConsoleSink"));
+
+        // The resolution scoped context is shared by the whole graph, so the container didn't inject it again
+        assertThat(field(service, "context"), notNullValue());
+        assertThat(field(repository, "context"), sameInstance(field(service, "context")));
+
+        // Prototypes and their scoped dependencies are created on every resolution
+        Factory<?> repositories = container.factoryFor(repositoryType);
+        Object other = repositories.get();
+        assertThat(other, not(sameInstance(repositories.get())));
+        assertThat(field(other, "context"), not(sameInstance(field(repository, "context"))));
+        assertThat(container.resolve(Key.of(result.classLoader.loadClass("test.app.Sink"), "audit")),
+                instanceOf(result.classLoader.loadClass("test.app.audit.AuditSink")));
+        container.close();
+    }
+
+    @Test
+    public void testDisposeSingletons() throws Exception {
+        Result result = compile(Collections.emptyList(), DISPOSABLE);
+        assertThat(result.errors.toString(), result.success, equalTo(true));
+
+        DependencyResolver resolver = (DependencyResolver) result.classLoader
+                .loadClass(WiringProcessor.DEFAULT_RESOLVER).newInstance();
+        Class<?> dbType = result.classLoader.loadClass("test.app.Db");
+        @SuppressWarnings("unchecked")
+        List<String> closed = (List<String>) result.classLoader.loadClass("test.app.Log").getField("CLOSED").get(null);
+
+        IoC container = IoC.create(resolver);
+        // The cache depends on the db through a prototype, so it's disposed first
+        Object cache = container.resolve(result.classLoader.loadClass("test.app.Cache"));
+        Object db = container.resolve(dbType);
+        assertThat(field(field(cache, "dao"), "store"), sameInstance(db));
+        assertThat(container.resolve(AutoCloseable.class), sameInstance(db));
+        assertThat(container.resolve(result.classLoader.loadClass("test.app.Store")), sameInstance(db));
+
+        container.close();
+        assertThat(closed, equalTo(Arrays.asList("cache", "db")));
+    }
+
+    @Test
+    public void testSingletonsBuiltConcurrently() throws Exception {
+        Result result = compile(Collections.emptyList(),
+                "package test.app;\n"
+                        + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                        + "@javax.inject.Singleton\n"
+                        + "public class Slow {\n"
+                        + "    public static final java.util.concurrent.CountDownLatch ENTERED =\n"
+                        + "            new java.util.concurrent.CountDownLatch(1);\n"
+                        + "    public static final java.util.concurrent.CountDownLatch RELEASE =\n"
+                        + "            new java.util.concurrent.CountDownLatch(1);\n"
+                        + "    public Slow() {\n"
+                        + "        ENTERED.countDown();\n"
+                        + "        try {\n"
+                        + "            RELEASE.await(10, java.util.concurrent.TimeUnit.SECONDS);\n"
+                        + "        } catch (InterruptedException e) {\n"
+                        + "            Thread.currentThread().interrupt();\n"
+                        + "        }\n"
+                        + "    }\n"
+                        + "}\n",
+                "package test.app;\n"
+                        + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                        + "@javax.inject.Singleton\n"
+                        + "public class Fast {\n"
+                        + "}\n");
+        assertThat(result.errors.toString(), result.success, equalTo(true));
+
+        DependencyResolver resolver = (DependencyResolver) result.classLoader
+                .loadClass(WiringProcessor.DEFAULT_RESOLVER).newInstance();
+        Class<?> slowType = result.classLoader.loadClass("test.app.Slow");
+        CountDownLatch entered = (CountDownLatch) slowType.getField("ENTERED").get(null);
+        CountDownLatch release = (CountDownLatch) slowType.getField("RELEASE").get(null);
+        Thread thread = new Thread(() -> resolver.resolve(slowType));
+        thread.start();
+        try {
+            assertThat(entered.await(10, TimeUnit.SECONDS), equalTo(true));
+
+            // Other singletons are created while the slow one is still being built
+            Object fast = resolver.resolve(result.classLoader.loadClass("test.app.Fast"));
+            assertThat(fast, notNullValue());
+            assertThat(thread.isAlive(), equalTo(true));
+
+            // And once created, singletons can't be replaced
+            Method singleton = resolver.getClass().getMethod("singleton", int.class, Supplier.class);
+            for (int id = 0; id < 2; id++) {
+                Object x = singleton.invoke(resolver, id, (Supplier<Object>) Object::new);
+                assertThat(x.getClass().getName(), not(equalTo(Object.class.getName())));
+            }
+        } finally {
+            release.countDown();
+            thread.join();
+        }
+    }
+
+    @Test
+    public void testResolverName() throws Exception {
+        Result result = compile(Collections.singletonList("-A" + WiringProcessor.RESOLVER_OPTION + "=test.AppResolver"),
+                GRAPH);
+        assertThat(result.errors.toString(), result.success, equalTo(true));
+        assertThat(result.classLoader.loadClass("test.AppResolver").newInstance(),
+                instanceOf(DependencyResolver.class));
+    }
+
+    @Test
+    public void testMissingBinding() throws Exception {
+        Result result = compile(Collections.emptyList(),
+                "package test.app;\n"
+                        + "public interface Clock {\n"
+                        + "}\n",
+                "package test.app;\n"
+                        + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                        + "public class Scheduler {\n"
+                        + "    @javax.inject.Inject Clock clock;\n"
+                        + "}\n");
+        assertThat(result.success, equalTo(false));
+        assertThat(result.errors, hasItem("Missing binding for test.app.Clock required by test.app.Scheduler"));
+    }
+
+    @Test
+    public void testCircularDependency() throws Exception {
+        Result result = compile(Collections.emptyList(),
+                "package test.app;\n"
+                        + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                        + "public class A {\n"
+                        + "    @javax.inject.Inject B b;\n"
+                        + "}\n",
+                "package test.app;\n"
+                        + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                        + "public class B {\n"
+                        + "    @javax.inject.Inject B(A a) {\n"
+                        + "    }\n"
+                        + "}\n");
+        assertThat(result.success, equalTo(false));
+        assertThat(result.errors, hasItem("Circular dependency: test.app.A -> test.app.B -> test.app.A"));
+    }
+
+    @Test
+    public void testUnreachableInjectionPoints() throws Exception {
+        Result result = compile(Collections.emptyList(),
+                "package test.app;\n"
+                        + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                        + "public class Clock {\n"
+                        + "}\n",
+                "package test.app;\n"
+                        + "@com.ruesga.siocc.resolvers.IoCDependency\n"
+                        + "public class Scheduler {\n"
+                        + "    @javax.inject.Inject private Clock clock;\n"
+                        + "    private Scheduler() {\n"
+                        + "    }\n"
+                        + "}\n");
+        assertThat(result.success, equalTo(false));
+        assertThat(result.errors, hasItem(
+                "Field test.app.Scheduler.clock must not be private, final or static to be injected by generated wiring"));
+        assertThat(result.errors, hasItem("The constructor of test.app.Scheduler can't be private"));
+    }
+
+    private static Object field(Object o, String name) throws ReflectiveOperationException {
+        Field field = o.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(o);
+    }
+
+    private Result compile(List<String> options, String... sources) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Path output = Files.createTempDirectory("siocc-processor");
+        try {
+            Result result = compile(compiler, output, options, sources);
+            results.add(result);
+            return result;
+        } catch (Exception e) {
+            delete(output);
+            throw e;
+        }
+    }
+
+    private static Result compile(JavaCompiler compiler, Path output, List<String> options, String... sources)
+            throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<JavaFileObject> units = new ArrayList<>();
+        for (String source : sources) {
+            units.add(new Source(source));
+        }
+        List<String> arguments = new ArrayList<>(options);
+        arguments.addAll(Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                "-d", output.toString(), "-s", output.toString()));
+
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics, arguments, null, units);
+            task.setProcessors(Collections.singletonList(new WiringProcessor()));
+            boolean success = task.call();
+            List<String> errors = diagnostics.getDiagnostics().stream()
+                    .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+                    .map(d -> d.getMessage(null))
+                    .collect(Collectors.toList());
+            URLClassLoader classLoader = new URLClassLoader(new URL[]{output.toUri().toURL()},
+                    WiringProcessorTest.class.getClassLoader());
+            return new Result(success, errors, classLoader, output);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static class Source extends SimpleJavaFileObject {
+        private static final Pattern PACKAGE = Pattern.compile("package\\s+([\\w.]+);");
+        private static final Pattern TYPE = Pattern.compile("(?:class|interface)\\s+(\\w+)");
+
+        private final String code;
+
+        private Source(String code) {
+            super(URI.create("string:///" + name(code).replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        private static String name(String code) {
+            Matcher pkg = PACKAGE.matcher(code);
+            Matcher type = TYPE.matcher(code);
+            if (!pkg.find() || !type.find()) {
+                throw new IllegalArgumentException(code);
+            }
+            return pkg.group(1) + "." + type.group(1);
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+}
@@ -1,16 +1,31 @@
 package com.ruesga.siocc.resolvers;
 
-import org.reflections.Reflections;
+import com.ruesga.siocc.ClassMetadata;
+import com.ruesga.siocc.Key;
+import com.ruesga.siocc.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Objects;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A {@link DependencyResolver} implementation that scans the classpath to look for annotated classes with
- * the {@link IoCDependency} annotation.
+ * the {@link IoCDependency} annotation. Annotated classes that are also annotated with a
+ * {@link javax.inject.Qualifier} (like {@link javax.inject.Named}) are only resolved by their qualified
+ * {@link Key}s.
+ * <p>
+ * The classpath is scanned in parallel by reading the class files as plain bytes, so the classes aren't
+ * loaded by the scan. An annotated class is loaded the first time a type it implements is resolved (or
+ * when its {@link #knownTypes()} are requested).
  * <p>
  * In order to create a new {@link AnnotationDependencyResolver} reference, developers must use
  * the {@link Builder} class.
@@ -27,6 +42,8 @@ public class AnnotationDependencyResolver implements DependencyResolver {
     public static class Builder {
         private AnnotationDependencyResolver resolver;
         private String[] pkgs = {};
+        private ClassLoader[] classLoaders = {};
+        private int parallelism;
 
         /**
          * Creates a new {@link AnnotationDependencyResolver.Builder} reference.
@@ -46,20 +63,90 @@ public class AnnotationDependencyResolver implements DependencyResolver {
             return this;
         }
 
+        /**
+         * Sets the class loaders used to scan the packages and load the annotated classes. By default, the
+         * context and the library class loaders are used.
+         *
+         * @param classLoaders the class loaders.
+         * @return the own builder's reference.
+         */
+        public Builder classLoaders(ClassLoader... classLoaders) {
+            this.classLoaders = classLoaders;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads used to scan the classpath. By default, the scan runs in the
+         * {@link ForkJoinPool#commonPool()}.
+         *
+         * @param parallelism the number of threads.
+         * @return the own builder's reference.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("parallelism must be greater than 0");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the tracer used to record the scanning and instantiation spans. Tracing is disabled by default.
+         *
+         * @param tracer the tracer to use.
+         * @return the own builder's reference.
+         * @see Tracer
+         */
+        public Builder tracer(Tracer tracer) {
+            this.resolver.tracer = tracer;
+            return this;
+        }
+
         /**
          * Creates and returns a new {@link AnnotationDependencyResolver} reference.
          *
          * @return a new {@link AnnotationDependencyResolver} reference.
          */
-        @SuppressWarnings("RedundantCast")
         public AnnotationDependencyResolver build() {
-            Reflections reflections = new Reflections((Object[]) pkgs);
-            resolver.dependencies = reflections.getTypesAnnotatedWith(IoCDependency.class);
+            ClassLoader[] loaders = classLoaders.length > 0 ? classLoaders : defaultClassLoaders();
+            ForkJoinPool pool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+            List<ClassPathScanner.ScannedClass> dependencies;
+            try (Tracer.Span ignored = resolver.tracer.begin("scan", String.join(",", pkgs))) {
+                dependencies = new ClassPathScanner(IoCDependency.class, loaders, pool).scan(pkgs);
+            } finally {
+                if (pool != ForkJoinPool.commonPool()) {
+                    pool.shutdown();
+                }
+            }
+
+            // Index every dependency by the names of all its supertypes. Qualifiers are only known once
+            // the classes are loaded
+            resolver.dependencies = dependencies;
+            for (ClassPathScanner.ScannedClass dependency : dependencies) {
+                for (String type : dependency.supertypes()) {
+                    resolver.index.computeIfAbsent(type, k -> new ArrayList<>()).add(dependency);
+                }
+            }
             return resolver;
         }
+
+        private static ClassLoader[] defaultClassLoaders() {
+            ClassLoader context = Thread.currentThread().getContextClassLoader();
+            ClassLoader library = AnnotationDependencyResolver.class.getClassLoader();
+            if (context == null || context == library) {
+                return new ClassLoader[]{library};
+            }
+            return new ClassLoader[]{context, library};
+        }
     }
 
-    private Set<Class<?>> dependencies;
+    private List<ClassPathScanner.ScannedClass> dependencies;
+    // The scanned dependencies by the names of their supertypes
+    private final Map<String, List<ClassPathScanner.ScannedClass>> index = new HashMap<>();
+    // The loaded candidates of every resolved key
+    private final ConcurrentMap<Key<?>, List<Class<?>>> candidates = new ConcurrentHashMap<>();
+    private volatile Set<Class<?>> knownTypes;
+    private Tracer tracer = Tracer.DISABLED;
 
     private AnnotationDependencyResolver() {
     }
@@ -68,26 +155,85 @@ public class AnnotationDependencyResolver implements DependencyResolver {
      * {@inheritDoc}
      */
     @Override
-    @SuppressWarnings("unchecked")
     public <T> T resolve(Class<T> type) {
-        Optional<T> o =
-                dependencies.stream().map(c -> {
-                    try {
-                        if (c.equals(type)) {
-                            return (T) c.newInstance();
-                        }
-                        if (type.isAssignableFrom(c)) {
-                            return (T) c.newInstance();
-                        }
-                    } catch (ReflectiveOperationException ex) {
-                        logger.warn("Can't create a new instance of type '{}' with implementation '{}'. " +
-                                        "Does it have a public empty constructor?",
-                                type.getName(), ((Class) c).getName());
-                    }
-                    return (T) null;
-                })
-                .filter(Objects::nonNull)
-                .findFirst();
-        return o.orElse(null);
+        return resolve(Key.of(type));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T resolve(Key<T> key) {
+        Class<T> type = key.type();
+        for (Class<?> c : candidates.computeIfAbsent(key, this::findCandidates)) {
+            try (Tracer.Span ignored = tracer.begin("instantiate", c.getName())) {
+                return ClassMetadata.of(c).newInstance();
+            } catch (ReflectiveOperationException ex) {
+                logger.warn("Can't create a new instance of type '{}' with implementation '{}'. " +
+                                "Does it have a public empty constructor?",
+                        type.getName(), c.getName());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the first candidate class of the key, the one instantiated by {@link #resolve(Key)}.
+     *
+     * @param key the binding key.
+     * @return the implementation class, or <code>null</code> if there isn't any candidate.
+     */
+    @Override
+    public Class<?> implementationOf(Key<?> key) {
+        List<Class<?>> c = candidates.computeIfAbsent(key, this::findCandidates);
+        return c.isEmpty() ? null : c.get(0);
+    }
+
+    /**
+     * Returns the scanned classes annotated with {@link IoCDependency}. This loads all of them.
+     *
+     * @return the known types.
+     */
+    @Override
+    public Set<Class<?>> knownTypes() {
+        Set<Class<?>> types = knownTypes;
+        if (types == null) {
+            types = new LinkedHashSet<>();
+            for (ClassPathScanner.ScannedClass dependency : dependencies) {
+                Class<?> c = load(dependency);
+                if (c != null) {
+                    types.add(c);
+                }
+            }
+            types = Collections.unmodifiableSet(types);
+            knownTypes = types;
+        }
+        return types;
+    }
+
+    private List<Class<?>> findCandidates(Key<?> key) {
+        List<ClassPathScanner.ScannedClass> dependencies = index.get(key.type().getName());
+        if (dependencies == null) {
+            return Collections.emptyList();
+        }
+        List<Class<?>> candidates = new ArrayList<>(dependencies.size());
+        for (ClassPathScanner.ScannedClass dependency : dependencies) {
+            Class<?> c = load(dependency);
+            // The name could match a type of another class loader
+            if (c != null && key.type().isAssignableFrom(c)
+                    && key.equals(Key.of(key.type(), ClassMetadata.of(c).qualifier()))) {
+                candidates.add(c);
+            }
+        }
+        return candidates;
+    }
+
+    private static Class<?> load(ClassPathScanner.ScannedClass dependency) {
+        try {
+            return Class.forName(dependency.name(), false, dependency.classLoader());
+        } catch (ClassNotFoundException | LinkageError ex) {
+            logger.warn("Can't load the dependency '{}'", dependency.name(), ex);
+            return null;
+        }
     }
 }
@@ -0,0 +1,487 @@
+package com.ruesga.siocc.resolvers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A classpath scanner that finds the classes annotated with a runtime-visible annotation without loading
+ * them.
+ * <p>
+ * The scanner looks up the package directories in the directories and jars (opened as zip file systems) of
+ * the class loaders, and walks them in a {@link ForkJoinPool}, forking a task per directory. Class files are
+ * read as plain bytes: only their constant pool, their header and their class attributes are parsed, and
+ * class files whose constant pool doesn't mention the annotation are discarded before looking at their
+ * attributes. The supertypes of the annotated classes are also read from their class files (through
+ * {@link ClassLoader#getResource(String)}), so the index of the resolver can be built without defining any
+ * class.
+ */
+class ClassPathScanner {
+    private final static Logger logger = LoggerFactory.getLogger(ClassPathScanner.class);
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String OBJECT = Object.class.getName();
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS =
+            "RuntimeVisibleAnnotations".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * A class found by the scanner.
+     */
+    static class ScannedClass {
+        private final String name;
+        private final ClassLoader classLoader;
+        private final Set<String> supertypes;
+
+        private ScannedClass(String name, ClassLoader classLoader, Set<String> supertypes) {
+            this.name = name;
+            this.classLoader = classLoader;
+            this.supertypes = supertypes;
+        }
+
+        /**
+         * Returns the binary name of the class.
+         */
+        String name() {
+            return name;
+        }
+
+        /**
+         * Returns the class loader where the class was found.
+         */
+        ClassLoader classLoader() {
+            return classLoader;
+        }
+
+        /**
+         * Returns the binary names of the class, its superclasses and all its interfaces.
+         */
+        Set<String> supertypes() {
+            return supertypes;
+        }
+    }
+
+    /**
+     * The parsed header of a class file.
+     */
+    private static class ClassFile {
+        private final String name;
+        private final List<String> directSupertypes;
+        private final boolean annotated;
+
+        private ClassFile(String name, List<String> directSupertypes, boolean annotated) {
+            this.name = name;
+            this.directSupertypes = directSupertypes;
+            this.annotated = annotated;
+        }
+    }
+
+    private final ClassLoader[] classLoaders;
+    private final ForkJoinPool pool;
+    private final byte[] descriptor;
+    // The headers of every class file read, by binary name
+    private final ConcurrentMap<String, ClassFile> headers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new scanner.
+     *
+     * @param annotation the annotation to look for. It must be retained at runtime.
+     * @param classLoaders the class loaders whose directories and jars are scanned.
+     * @param pool the pool where the scan is run.
+     */
+    ClassPathScanner(Class<?> annotation, ClassLoader[] classLoaders, ForkJoinPool pool) {
+        this.descriptor = ("L" + annotation.getName().replace('.', '/') + ";").getBytes(StandardCharsets.UTF_8);
+        this.classLoaders = classLoaders;
+        this.pool = pool;
+    }
+
+    /**
+     * Scans the passed packages (and their subpackages) and returns the annotated classes, sorted by name.
+     * Directories and jars that can't be read are skipped with a warning.
+     *
+     * @param pkgs the packages.
+     * @return the annotated classes.
+     */
+    List<ScannedClass> scan(String... pkgs) {
+        Map<String, ClassLoader> roots = findRoots(pkgs);
+        Map<Path, FileSystem> fileSystems = new HashMap<>();
+        try {
+            Map<ScanTask, ClassLoader> tasks = new LinkedHashMap<>();
+            for (Map.Entry<String, ClassLoader> root : roots.entrySet()) {
+                Path dir = toPath(root.getKey(), fileSystems);
+                if (dir != null && Files.isDirectory(dir)) {
+                    ScanTask task = new ScanTask(dir);
+                    pool.execute(task);
+                    tasks.put(task, root.getValue());
+                }
+            }
+
+            // First loader wins, like class loading does
+            Map<String, ScannedClass> classes = new TreeMap<>();
+            for (Map.Entry<ScanTask, ClassLoader> task : tasks.entrySet()) {
+                for (ClassFile classFile : task.getKey().join()) {
+                    if (!classes.containsKey(classFile.name)) {
+                        classes.put(classFile.name, new ScannedClass(classFile.name, task.getValue(),
+                                supertypesOf(classFile, task.getValue())));
+                    }
+                }
+            }
+            return new ArrayList<>(classes.values());
+        } finally {
+            for (FileSystem fileSystem : fileSystems.values()) {
+                try {
+                    fileSystem.close();
+                } catch (IOException ex) {
+                    logger.debug("Can't close {}", fileSystem, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the URLs of the package directories, with the class loader where they were found.
+     */
+    private Map<String, ClassLoader> findRoots(String[] pkgs) {
+        Map<String, ClassLoader> roots = new LinkedHashMap<>();
+        for (String pkg : pkgs) {
+            String path = pkg.replace('.', '/');
+            for (ClassLoader classLoader : classLoaders) {
+                try {
+                    Enumeration<URL> urls = classLoader.getResources(path);
+                    while (urls.hasMoreElements()) {
+                        roots.putIfAbsent(urls.nextElement().toExternalForm(), classLoader);
+                    }
+                } catch (IOException ex) {
+                    logger.warn("Can't look up package '{}' in class loader {}", pkg, classLoader, ex);
+                }
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Returns the path of a package directory URL, opening the jar file system if needed.
+     */
+    private static Path toPath(String url, Map<Path, FileSystem> fileSystems) {
+        try {
+            if (url.startsWith("file:")) {
+                return Paths.get(new URI(url));
+            }
+            int separator = url.indexOf("!/");
+            if (url.startsWith("jar:file:") && separator != -1) {
+                Path jar = Paths.get(new URI(url.substring("jar:".length(), separator)));
+                FileSystem fileSystem = fileSystems.get(jar);
+                if (fileSystem == null) {
+                    fileSystem = FileSystems.newFileSystem(jar, (ClassLoader) null);
+                    fileSystems.put(jar, fileSystem);
+                }
+                return fileSystem.getPath(url.substring(separator + 1));
+            }
+            logger.warn("Can't scan '{}'. Unsupported location", url);
+        } catch (IOException | URISyntaxException | IllegalArgumentException ex) {
+            logger.warn("Can't scan '{}'", url, ex);
+        }
+        return null;
+    }
+
+    /**
+     * Scans a directory, forking a task per subdirectory.
+     */
+    private class ScanTask extends RecursiveTask<List<ClassFile>> {
+        private final Path dir;
+
+        private ScanTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected List<ClassFile> compute() {
+            List<ScanTask> subtasks = new ArrayList<>();
+            List<ClassFile> annotated = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    String fileName = entry.getFileName().toString();
+                    if (Files.isDirectory(entry)) {
+                        ScanTask subtask = new ScanTask(entry);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    } else if (fileName.endsWith(CLASS_SUFFIX)
+                            && !fileName.equals("module-info.class") && !fileName.equals("package-info.class")) {
+                        ClassFile classFile = read(entry);
+                        if (classFile != null && classFile.annotated) {
+                            annotated.add(classFile);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                logger.warn("Can't scan '{}'", dir, ex);
+            }
+            for (ScanTask subtask : subtasks) {
+                annotated.addAll(subtask.join());
+            }
+            return annotated;
+        }
+
+        private ClassFile read(Path file) {
+            try {
+                ClassFile classFile = parse(Files.readAllBytes(file), descriptor);
+                headers.putIfAbsent(classFile.name, classFile);
+                return classFile;
+            } catch (IOException | RuntimeException ex) {
+                logger.warn("Can't read class file '{}'", file, ex);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the binary names of the class and all its supertypes, reading the class files of the
+     * supertypes that weren't scanned.
+     */
+    private Set<String> supertypesOf(ClassFile classFile, ClassLoader classLoader) {
+        Set<String> supertypes = new LinkedHashSet<>();
+        List<ClassFile> pending = new ArrayList<>();
+        supertypes.add(classFile.name);
+        pending.add(classFile);
+        while (!pending.isEmpty()) {
+            ClassFile current = pending.remove(pending.size() - 1);
+            for (String supertype : current.directSupertypes) {
+                if (supertypes.add(supertype) && !supertype.equals(OBJECT)) {
+                    ClassFile header = header(supertype, classLoader);
+                    if (header != null) {
+                        pending.add(header);
+                    }
+                }
+            }
+        }
+        return supertypes;
+    }
+
+    private ClassFile header(String name, ClassLoader classLoader) {
+        ClassFile header = headers.get(name);
+        if (header != null) {
+            return header;
+        }
+        try (InputStream in = classLoader.getResourceAsStream(name.replace('.', '/') + CLASS_SUFFIX)) {
+            if (in == null) {
+                logger.debug("Can't find the class file of '{}'", name);
+                return null;
+            }
+            header = parse(readAll(in), null);
+            headers.putIfAbsent(name, header);
+            return header;
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Can't read the class file of '{}'", name, ex);
+            return null;
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Parses the header of a class file and, when the annotation descriptor is passed and the constant pool
+     * mentions it, looks it up in the runtime-visible annotations of the class.
+     */
+    private static ClassFile parse(byte[] b, byte[] descriptor) throws IOException {
+        if (b.length < 10 || u4(b, 0) != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+
+        // The constant pool. Only the offsets are recorded, strings are decoded on demand
+        int count = u2(b, 8);
+        int[] offsets = new int[count];
+        boolean mentioned = false;
+        int p = 10;
+        for (int i = 1; i < count; i++) {
+            offsets[i] = p;
+            int tag = b[p] & 0xff;
+            switch (tag) {
+                case 1: // Utf8
+                    int length = u2(b, p + 1);
+                    mentioned |= descriptor != null && equals(b, p + 3, length, descriptor);
+                    p += 3 + length;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    p += 3;
+                    break;
+                case 15: // MethodHandle
+                    p += 4;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    p += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    p += 9;
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        // access_flags, this_class, super_class and interfaces
+        String name = className(b, offsets, u2(b, p + 2));
+        int superClass = u2(b, p + 4);
+        int interfaces = u2(b, p + 6);
+        p += 8;
+        List<String> directSupertypes = new ArrayList<>(interfaces + 1);
+        if (superClass != 0) {
+            directSupertypes.add(className(b, offsets, superClass));
+        }
+        for (int i = 0; i < interfaces; i++, p += 2) {
+            directSupertypes.add(className(b, offsets, u2(b, p)));
+        }
+        if (!mentioned) {
+            return new ClassFile(name, directSupertypes, false);
+        }
+
+        // Skip fields and methods
+        for (int members = 0; members < 2; members++) {
+            int n = u2(b, p);
+            p += 2;
+            for (int i = 0; i < n; i++) {
+                p = skipAttributes(b, p + 6);
+            }
+        }
+
+        // The class attributes
+        int attributes = u2(b, p);
+        p += 2;
+        for (int i = 0; i < attributes; i++) {
+            int nameOffset = offsets[u2(b, p)];
+            int length = u4(b, p + 2);
+            if (equals(b, nameOffset + 3, u2(b, nameOffset + 1), RUNTIME_VISIBLE_ANNOTATIONS)) {
+                int n = u2(b, p + 6);
+                int q = p + 8;
+                for (int j = 0; j < n; j++) {
+                    int typeOffset = offsets[u2(b, q)];
+                    if (equals(b, typeOffset + 3, u2(b, typeOffset + 1), descriptor)) {
+                        return new ClassFile(name, directSupertypes, true);
+                    }
+                    q = skipAnnotation(b, q);
+                }
+            }
+            p += 6 + length;
+        }
+        return new ClassFile(name, directSupertypes, false);
+    }
+
+    private static int skipAttributes(byte[] b, int p) {
+        int n = u2(b, p);
+        p += 2;
+        for (int i = 0; i < n; i++) {
+            p += 6 + u4(b, p + 2);
+        }
+        return p;
+    }
+
+    private static int skipAnnotation(byte[] b, int p) throws IOException {
+        int pairs = u2(b, p + 2);
+        p += 4;
+        for (int i = 0; i < pairs; i++) {
+            p = skipElementValue(b, p + 2);
+        }
+        return p;
+    }
+
+    private static int skipElementValue(byte[] b, int p) throws IOException {
+        char tag = (char) (b[p] & 0xff);
+        switch (tag) {
+            case 'B': case 'C': case 'D': case 'F': case 'I': case 'J': case 'S': case 'Z': case 's': case 'c':
+                return p + 3;
+            case 'e':
+                return p + 5;
+            case '@':
+                return skipAnnotation(b, p + 1);
+            case '[':
+                int n = u2(b, p + 1);
+                p += 3;
+                for (int i = 0; i < n; i++) {
+                    p = skipElementValue(b, p);
+                }
+                return p;
+            default:
+                throw new IOException("Unknown element value tag " + tag);
+        }
+    }
+
+    private static String className(byte[] b, int[] offsets, int index) throws IOException {
+        int offset = offsets[u2(b, offsets[index] + 1)];
+        int length = u2(b, offset + 1);
+        for (int i = offset + 3; i < offset + 3 + length; i++) {
+            if (b[i] < 0) {
+                // Modified UTF-8
+                return new DataInputStream(new ByteArrayInputStream(b, offset + 1, length + 2))
+                        .readUTF().replace('/', '.');
+            }
+        }
+        return new String(b, offset + 3, length, StandardCharsets.ISO_8859_1).replace('/', '.');
+    }
+
+    private static boolean equals(byte[] b, int offset, int length, byte[] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (b[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u2(byte[] b, int p) {
+        return ((b[p] & 0xff) << 8) | (b[p + 1] & 0xff);
+    }
+
+    private static int u4(byte[] b, int p) {
+        return ((b[p] & 0xff) << 24) | ((b[p + 1] & 0xff) << 16) | ((b[p + 2] & 0xff) << 8) | (b[p + 3] & 0xff);
+    }
+}
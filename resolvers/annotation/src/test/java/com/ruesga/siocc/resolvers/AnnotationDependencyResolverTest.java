@@ -1,10 +1,14 @@
 package com.ruesga.siocc.resolvers;
 
+import com.ruesga.siocc.Key;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import javax.inject.Named;
+
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
@@ -19,6 +23,11 @@ public class AnnotationDependencyResolverTest {
     public static class ServiceImpl implements Service {
     }
 
+    @IoCDependency
+    @Named("other")
+    public static class OtherServiceImpl implements Service {
+    }
+
     public interface NonService {
     }
 
@@ -38,5 +47,17 @@ public class AnnotationDependencyResolverTest {
 
         NonService x1 = resolver.resolve(NonService.class);
         assertThat(x1, nullValue());
+        assertThat(resolver.knownTypes(), containsInAnyOrder(ServiceImpl.class, OtherServiceImpl.class));
+    }
+
+    @Test
+    public void testResolveQualified() {
+        AnnotationDependencyResolver resolver =
+                new AnnotationDependencyResolver.Builder()
+                        .scan("com.ruesga.siocc.resolvers")
+                        .build();
+        assertThat(resolver.resolve(Key.of(Service.class, "other")), instanceOf(OtherServiceImpl.class));
+        assertThat(resolver.resolve(Key.of(OtherServiceImpl.class, "other")), instanceOf(OtherServiceImpl.class));
+        assertThat(resolver.resolve(OtherServiceImpl.class), nullValue());
     }
 }
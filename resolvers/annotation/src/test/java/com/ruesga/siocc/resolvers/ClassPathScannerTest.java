@@ -0,0 +1,135 @@
+package com.ruesga.siocc.resolvers;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.inject.Named;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+@RunWith(JUnit4.class)
+public class ClassPathScannerTest {
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.TYPE, ElementType.FIELD})
+    public @interface Scanned {
+    }
+
+    public interface Component extends Serializable {
+    }
+
+    public static abstract class AbstractComponent implements Component {
+    }
+
+    @Named("first")
+    @Scanned
+    public static class FirstComponent extends AbstractComponent implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    // Mentions the annotation, but isn't annotated with it
+    public static class NotScanned {
+        @Scanned
+        private Object field;
+    }
+
+    private static class TrackingClassLoader extends URLClassLoader {
+        private TrackingClassLoader(URL url) {
+            super(new URL[]{url}, null);
+        }
+
+        private boolean isLoaded(Class<?> type) {
+            return findLoadedClass(type.getName()) != null;
+        }
+    }
+
+    @Test
+    public void testScanDirectory() {
+        List<ClassPathScanner.ScannedClass> classes = new ClassPathScanner(Scanned.class,
+                new ClassLoader[]{getClass().getClassLoader()}, ForkJoinPool.commonPool())
+                .scan("com.ruesga.siocc");
+        assertThat(names(classes), contains(FirstComponent.class.getName()));
+        assertThat(classes.get(0).supertypes(), containsInAnyOrder(
+                FirstComponent.class.getName(), AbstractComponent.class.getName(), Component.class.getName(),
+                Serializable.class.getName(), Runnable.class.getName(), Object.class.getName()));
+    }
+
+    @Test
+    public void testScanJar() throws IOException {
+        Path jar = Files.createTempFile("siocc-scan", ".jar");
+        try {
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                // Packages are looked up by their directory entries
+                for (String dir : new String[]{"com/", "com/ruesga/", "com/ruesga/siocc/",
+                        "com/ruesga/siocc/resolvers/"}) {
+                    out.putNextEntry(new JarEntry(dir));
+                    out.closeEntry();
+                }
+                for (Class<?> type : new Class<?>[]{Component.class, AbstractComponent.class,
+                        FirstComponent.class, NotScanned.class}) {
+                    String name = type.getName().replace('.', '/') + ".class";
+                    out.putNextEntry(new JarEntry(name));
+                    try (InputStream in = getClass().getClassLoader().getResourceAsStream(name)) {
+                        byte[] buffer = new byte[4096];
+                        for (int read; (read = in.read(buffer)) != -1; ) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                    out.closeEntry();
+                }
+            }
+
+            try (TrackingClassLoader classLoader = new TrackingClassLoader(jar.toUri().toURL())) {
+                ForkJoinPool pool = new ForkJoinPool(2);
+                List<ClassPathScanner.ScannedClass> classes = new ClassPathScanner(Scanned.class,
+                        new ClassLoader[]{classLoader}, pool).scan("com.ruesga");
+                pool.shutdown();
+                assertThat(names(classes), contains(FirstComponent.class.getName()));
+                assertThat(classes.get(0).supertypes(), containsInAnyOrder(
+                        FirstComponent.class.getName(), AbstractComponent.class.getName(),
+                        Component.class.getName(), Serializable.class.getName(), Runnable.class.getName(),
+                        Object.class.getName()));
+
+                // Nothing was loaded
+                assertThat(classLoader.isLoaded(FirstComponent.class), equalTo(false));
+                assertThat(classLoader.isLoaded(AbstractComponent.class), equalTo(false));
+                assertThat(classLoader.isLoaded(Component.class), equalTo(false));
+            }
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    @Test
+    public void testScanUnknownPackage() {
+        List<ClassPathScanner.ScannedClass> classes = new ClassPathScanner(Scanned.class,
+                new ClassLoader[]{getClass().getClassLoader()}, ForkJoinPool.commonPool())
+                .scan("com.ruesga.unknown");
+        assertThat(classes.isEmpty(), equalTo(true));
+    }
+
+    private static List<String> names(List<ClassPathScanner.ScannedClass> classes) {
+        return classes.stream().map(ClassPathScanner.ScannedClass::name).collect(Collectors.toList());
+    }
+}
@@ -1,20 +1,32 @@
 package com.ruesga.siocc.resolvers;
 
+import com.ruesga.siocc.ClassMetadata;
+import com.ruesga.siocc.Key;
+import com.ruesga.siocc.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Modifier;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A {@link DependencyResolver} implementation able to map single classes, implementation classes and factories
- * in order to resolve dependencies.
+ * in order to resolve dependencies. Implementation classes and factories can also be registered together with
+ * a {@link BindingCache}, so their instances are reused while they remain cached, and bound to qualified
+ * {@link Key}s, so several implementations of the same type can be registered.
+ * <p>
+ * Cached instances are shared by every resolution, so when resolved by a container they get their fields
+ * injected once, before they are cached, and the container doesn't inject them again.
  * <p>
  * In order to create a new {@link BasicDependencyResolver} reference, developers must use the {@link Builder} class.
  *
  * @see DependencyResolver
  * @see Builder
+ * @see BindingCache
  */
 public class BasicDependencyResolver implements DependencyResolver {
     private final static Logger logger = LoggerFactory.getLogger(BasicDependencyResolver.class);
@@ -57,7 +69,7 @@ public class BasicDependencyResolver implements DependencyResolver {
             if (impl.isInterface() || Modifier.isAbstract(impl.getModifiers())) {
                 throw new NonInstantiableClassException(impl);
             }
-            this.resolver.mapping.put(impl, impl);
+            this.resolver.mapping.put(Key.of(impl), impl);
             return this;
         }
 
@@ -71,10 +83,27 @@ public class BasicDependencyResolver implements DependencyResolver {
          * @throws NonInstantiableClassException if the passed implementation type class cannot be instantiated.
          */
         public <T> Builder register(Class<T> type, Class<? extends T> impl) throws NonInstantiableClassException {
+            return register(Key.of(type), impl);
+        }
+
+        /**
+         * Registers a new implementation class for a binding key, which can be qualified.
+         * <pre>
+         *     builder.register(Key.of(DataSource.class, "replica"), ReplicaDataSource.class);
+         * </pre>
+         *
+         * @param key the binding key.
+         * @param impl the implementation type.
+         * @param <T> the class' type.
+         * @return the own builder's reference.
+         * @throws NonInstantiableClassException if the passed implementation type class cannot be instantiated.
+         * @see Key
+         */
+        public <T> Builder register(Key<T> key, Class<? extends T> impl) throws NonInstantiableClassException {
             if (impl.isInterface() || Modifier.isAbstract(impl.getModifiers())) {
                 throw new NonInstantiableClassException(impl);
             }
-            this.resolver.mapping.put(type, impl);
+            this.resolver.mapping.put(key, impl);
             return this;
         }
 
@@ -87,7 +116,65 @@ public class BasicDependencyResolver implements DependencyResolver {
          * @return the own builder's reference.
          */
         public <T> Builder register(Class<T> type, Provider<T> provider) {
-            this.resolver.mapping.put(type, provider);
+            return register(Key.of(type), provider);
+        }
+
+        /**
+         * Registers a new factory class for a binding key, which can be qualified.
+         *
+         * @param key the binding key.
+         * @param provider the implementation factory.
+         * @param <T> the class' type.
+         * @return the own builder's reference.
+         * @see Key
+         */
+        public <T> Builder register(Key<T> key, Provider<T> provider) {
+            this.resolver.mapping.put(key, provider);
+            return this;
+        }
+
+        /**
+         * Registers a new implementation class whose instances are cached in the passed {@link BindingCache}.
+         *
+         * @param type the base type.
+         * @param impl the implementation type.
+         * @param cache the cache where instances are held.
+         * @param <T> the class' type.
+         * @return the own builder's reference.
+         * @throws NonInstantiableClassException if the passed implementation type class cannot be instantiated.
+         * @see BindingCache
+         */
+        public <T> Builder register(Class<T> type, Class<? extends T> impl, BindingCache cache)
+                throws NonInstantiableClassException {
+            register(type, impl);
+            this.resolver.mapping.put(Key.of(type), new CachedBinding(impl, cache));
+            return this;
+        }
+
+        /**
+         * Registers a new factory class whose instances are cached in the passed {@link BindingCache}.
+         *
+         * @param type the base type.
+         * @param provider the implementation factory.
+         * @param cache the cache where instances are held.
+         * @param <T> the class' type.
+         * @return the own builder's reference.
+         * @see BindingCache
+         */
+        public <T> Builder register(Class<T> type, Provider<T> provider, BindingCache cache) {
+            this.resolver.mapping.put(Key.of(type), new CachedBinding(provider, cache));
+            return this;
+        }
+
+        /**
+         * Sets the tracer used to record the instantiation spans. Tracing is disabled by default.
+         *
+         * @param tracer the tracer to use.
+         * @return the own builder's reference.
+         * @see Tracer
+         */
+        public Builder tracer(Tracer tracer) {
+            this.resolver.tracer = tracer;
             return this;
         }
 
@@ -101,7 +188,18 @@ public class BasicDependencyResolver implements DependencyResolver {
         }
     }
 
-    private final Map<Class<?>, Object> mapping = new HashMap<>();
+    private static class CachedBinding {
+        private final Object binding;
+        private final BindingCache cache;
+
+        private CachedBinding(Object binding, BindingCache cache) {
+            this.binding = binding;
+            this.cache = cache;
+        }
+    }
+
+    private final Map<Key<?>, Object> mapping = new HashMap<>();
+    private Tracer tracer = Tracer.DISABLED;
 
     private BasicDependencyResolver() {
     }
@@ -110,18 +208,113 @@ public class BasicDependencyResolver implements DependencyResolver {
      * {@inheritDoc}
      */
     @Override
-    @SuppressWarnings("unchecked")
     public <T> T resolve(Class<T> type) {
-        if (!mapping.containsKey(type)) {
+        return resolve(Key.of(type));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T resolve(Key<T> key) {
+        Object o = mapping.get(key);
+        if (o == null) {
             return null;
         }
-        Object o = mapping.get(type);
+        Class<T> type = key.type();
+        if (o instanceof CachedBinding) {
+            CachedBinding binding = (CachedBinding) o;
+            return binding.cache.get(type, () -> create(type, binding.binding));
+        }
+        return create(type, o);
+    }
+
+    /**
+     * Resolves the passed binding key. New instances of cached bindings are injected with the passed injector
+     * before they are cached.
+     *
+     * @param key the binding key.
+     * @param injector the injector of the container.
+     * @param <T> the class type of the desired type.
+     * @return an instance of the resolved type or <code>null</code> if not resolved.
+     * @throws DependencyResolutionException if something when wrong trying to inject a new cached instance.
+     */
+    @Override
+    public <T> T resolve(Key<T> key, MembersInjector injector) throws DependencyResolutionException {
+        Object o = mapping.get(key);
+        if (o == null) {
+            return null;
+        }
+        Class<T> type = key.type();
+        if (o instanceof CachedBinding) {
+            CachedBinding binding = (CachedBinding) o;
+            return binding.cache.get(type, () -> {
+                T x = create(type, binding.binding);
+                if (x != null) {
+                    injector.injectMembers(key, x);
+                }
+                return x;
+            });
+        }
+        return create(type, o);
+    }
+
+    /**
+     * Returns <code>true</code> for cached bindings, which are injected by
+     * {@link #resolve(Key, MembersInjector)}.
+     *
+     * @param key the binding key.
+     * @return whether the key is bound to a cached binding.
+     */
+    @Override
+    public boolean injectsMembers(Key<?> key) {
+        return mapping.get(key) instanceof CachedBinding;
+    }
+
+    /**
+     * Returns the implementation class of keys bound to a class, without a {@link BindingCache}.
+     *
+     * @param key the binding key.
+     * @return the implementation class, or <code>null</code> if the key isn't bound to a non cached class.
+     */
+    @Override
+    public Class<?> implementationOf(Key<?> key) {
+        Object o = mapping.get(key);
+        return o instanceof Class ? (Class<?>) o : null;
+    }
+
+    /**
+     * Returns the registered types and their implementation classes.
+     *
+     * @return the known types.
+     */
+    @Override
+    public Set<Class<?>> knownTypes() {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        mapping.keySet().forEach(key -> types.add(key.type()));
+        for (Object o : mapping.values()) {
+            Object binding = o instanceof CachedBinding ? ((CachedBinding) o).binding : o;
+            if (binding instanceof Class) {
+                types.add((Class<?>) binding);
+            }
+        }
+        return Collections.unmodifiableSet(types);
+    }
+
+    private <T> T create(Class<T> type, Object o) {
+        try (Tracer.Span ignored = tracer.begin("instantiate", type.getName())) {
+            return createInternal(type, o);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T createInternal(Class<T> type, Object o) {
         if (o instanceof Provider) {
             return (T)((Provider) o).provide();
         }
         if (o instanceof Class) {
             try {
-                return (T) ((Class) o).newInstance();
+                return ClassMetadata.of((Class<?>) o).newInstance();
             } catch (ReflectiveOperationException e) {
                 logger.warn("Can't create a new instance of type '{}' with implementation '{}'. " +
                                 "Does it have a public empty constructor?",
@@ -0,0 +1,357 @@
+package com.ruesga.siocc.resolvers;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A memory-sensitive cache for bindings registered through
+ * {@link BasicDependencyResolver.Builder#register(Class, Class, BindingCache)} or
+ * {@link BasicDependencyResolver.Builder#register(Class, BasicDependencyResolver.Provider, BindingCache)}.
+ * <p>
+ * Cached bindings are built once and reused while they remain in the cache. Entries are evicted when:
+ * <ul>
+ *     <li>the cache exceeds its maximum size (the least recently used entry is evicted).</li>
+ *     <li>the entry wasn't accessed during the configured expiration time.</li>
+ *     <li>the garbage collector reclaims the instance (only with {@link ReferenceType#SOFT} or
+ *     {@link ReferenceType#WEAK} references).</li>
+ * </ul>
+ * A {@link BindingCache} can be shared by several bindings, so the maximum size applies to all of them.
+ * <p>
+ * In order to create a new {@link BindingCache} reference, developers must use the {@link Builder} class.
+ * <pre>
+ *     BindingCache cache = new BindingCache.Builder()
+ *             .maximumSize(16)
+ *             .references(BindingCache.ReferenceType.SOFT)
+ *             .expireAfterAccess(10, TimeUnit.MINUTES)
+ *             .build();
+ *     BasicDependencyResolver resolver =
+ *             new BasicDependencyResolver.Builder()
+ *                     .register(LookupTable.class, new LookupTableProvider(), cache)
+ *                     .build();
+ * </pre>
+ *
+ * @see BasicDependencyResolver
+ * @see Builder
+ */
+public class BindingCache {
+    /**
+     * The kind of references used to hold the cached instances.
+     */
+    public enum ReferenceType {
+        /** Instances are only evicted by size or expiration. */
+        STRONG,
+        /** Instances can be reclaimed by the garbage collector under memory pressure. */
+        SOFT,
+        /** Instances can be reclaimed by the garbage collector once they are no longer strongly reachable. */
+        WEAK
+    }
+
+    /**
+     * A builder for creating {@link BindingCache} classes.
+     */
+    public static class Builder {
+        private BindingCache cache;
+
+        /**
+         * Creates a new {@link BindingCache.Builder} reference.
+         */
+        public Builder() {
+            this.cache = new BindingCache();
+        }
+
+        /**
+         * Sets the maximum number of entries of the cache. When exceeded, the least recently used entry
+         * is evicted. By default the cache is unbounded.
+         *
+         * @param maximumSize the maximum number of entries.
+         * @return the own builder's reference.
+         */
+        public Builder maximumSize(int maximumSize) {
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("maximumSize must be greater than 0");
+            }
+            this.cache.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Sets the kind of references used to hold the cached instances. Defaults to
+         * {@link ReferenceType#STRONG}.
+         *
+         * @param type the reference type.
+         * @return the own builder's reference.
+         * @see ReferenceType
+         */
+        public Builder references(ReferenceType type) {
+            this.cache.referenceType = type;
+            return this;
+        }
+
+        /**
+         * Evicts entries that weren't accessed during the passed time. By default entries never expire.
+         *
+         * @param duration the expiration time.
+         * @param unit the unit of the expiration time.
+         * @return the own builder's reference.
+         */
+        public Builder expireAfterAccess(long duration, TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("duration must be greater than 0");
+            }
+            this.cache.expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        Builder ticker(LongSupplier ticker) {
+            this.cache.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * Creates and returns a new {@link BindingCache} reference.
+         *
+         * @return a new {@link BindingCache} reference.
+         */
+        public BindingCache build() {
+            return cache;
+        }
+    }
+
+    /**
+     * A snapshot of the statistics of a {@link BindingCache}.
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        private Stats(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        /**
+         * Returns the number of lookups that returned a cached instance.
+         *
+         * @return the number of hits.
+         */
+        public long hits() {
+            return hits;
+        }
+
+        /**
+         * Returns the number of lookups that needed to build a new instance.
+         *
+         * @return the number of misses.
+         */
+        public long misses() {
+            return misses;
+        }
+
+        /**
+         * Returns the number of entries evicted by size, expiration or garbage collection.
+         *
+         * @return the number of evictions.
+         */
+        public long evictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{hits=%d, misses=%d, evictions=%d}", hits, misses, evictions);
+        }
+    }
+
+    /**
+     * Builds the instance of a cache miss.
+     */
+    @FunctionalInterface
+    interface Loader<T, E extends Exception> {
+        T load() throws E;
+    }
+
+    private static class CacheEntry {
+        private final Object value;
+        private long accessed;
+
+        private CacheEntry(Object value, long accessed) {
+            this.value = value;
+            this.accessed = accessed;
+        }
+
+        Object get() {
+            return value instanceof Reference ? ((Reference<?>) value).get() : value;
+        }
+    }
+
+    private static class SoftEntryReference extends SoftReference<Object> {
+        private final Class<?> type;
+        private CacheEntry entry;
+
+        private SoftEntryReference(Class<?> type, Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.type = type;
+        }
+    }
+
+    private static class WeakEntryReference extends WeakReference<Object> {
+        private final Class<?> type;
+        private CacheEntry entry;
+
+        private WeakEntryReference(Class<?> type, Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.type = type;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final Map<Class<?>, CacheEntry> entries = new LinkedHashMap<Class<?>, CacheEntry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Class<?>, CacheEntry> eldest) {
+            if (size() > maximumSize) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private int maximumSize = Integer.MAX_VALUE;
+    private ReferenceType referenceType = ReferenceType.STRONG;
+    private long expireAfterAccessNanos = -1;
+    private LongSupplier ticker = System::nanoTime;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private BindingCache() {
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this cache.
+     *
+     * @return the cache statistics.
+     */
+    public Stats stats() {
+        synchronized (lock) {
+            return new Stats(hits, misses, evictions);
+        }
+    }
+
+    /**
+     * Returns the number of entries currently held by this cache.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        synchronized (lock) {
+            drainQueue();
+            return entries.size();
+        }
+    }
+
+    /**
+     * Discards the cached instance of the passed type, if any.
+     *
+     * @param type the type to discard.
+     */
+    public void invalidate(Class<?> type) {
+        synchronized (lock) {
+            entries.remove(type);
+        }
+    }
+
+    /**
+     * Discards all the cached instances.
+     */
+    public void invalidateAll() {
+        synchronized (lock) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the cached instance of the passed type or builds a new one with the passed loader. The loader
+     * is called outside of the cache's lock, so concurrent misses on the same type may build more than one
+     * instance; the last one built is the one kept in the cache. Instances are only published once the loader
+     * returns, so other callers never see a partially built instance.
+     */
+    @SuppressWarnings("unchecked")
+    <T, E extends Exception> T get(Class<T> type, Loader<T, E> loader) throws E {
+        synchronized (lock) {
+            drainQueue();
+            long now = ticker.getAsLong();
+            CacheEntry entry = entries.get(type);
+            if (entry != null) {
+                Object value = entry.get();
+                if (value != null && !isExpired(entry, now)) {
+                    entry.accessed = now;
+                    hits++;
+                    return (T) value;
+                }
+                entries.remove(type);
+                evictions++;
+            }
+            misses++;
+        }
+
+        T value = loader.load();
+        if (value != null) {
+            synchronized (lock) {
+                entries.put(type, entry(type, value, ticker.getAsLong()));
+            }
+        }
+        return value;
+    }
+
+    private boolean isExpired(CacheEntry entry, long now) {
+        return expireAfterAccessNanos > 0 && now - entry.accessed >= expireAfterAccessNanos;
+    }
+
+    private CacheEntry entry(Class<?> type, Object value, long now) {
+        // The references point back to their entry, so draining them doesn't need to look it up
+        switch (referenceType) {
+            case SOFT:
+                SoftEntryReference soft = new SoftEntryReference(type, value, queue);
+                soft.entry = new CacheEntry(soft, now);
+                return soft.entry;
+            case WEAK:
+                WeakEntryReference weak = new WeakEntryReference(type, value, queue);
+                weak.entry = new CacheEntry(weak, now);
+                return weak.entry;
+            case STRONG:
+            default:
+                return new CacheEntry(value, now);
+        }
+    }
+
+    private void drainQueue() {
+        Reference<?> ref;
+        while ((ref = queue.poll()) != null) {
+            Class<?> type;
+            CacheEntry entry;
+            if (ref instanceof SoftEntryReference) {
+                type = ((SoftEntryReference) ref).type;
+                entry = ((SoftEntryReference) ref).entry;
+            } else {
+                type = ((WeakEntryReference) ref).type;
+                entry = ((WeakEntryReference) ref).entry;
+            }
+            // Removed only if it's still the live entry of its type. Unlike get(), this doesn't count as an
+            // access, so it doesn't change the eviction order
+            if (entries.remove(type, entry)) {
+                evictions++;
+            }
+        }
+    }
+}
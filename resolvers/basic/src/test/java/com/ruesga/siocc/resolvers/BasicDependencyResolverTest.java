@@ -1,16 +1,25 @@
 package com.ruesga.siocc.resolvers;
 
+import com.ruesga.siocc.Factory;
+import com.ruesga.siocc.IoC;
+import com.ruesga.siocc.Key;
 import com.ruesga.siocc.resolvers.BasicDependencyResolver.Provider;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import javax.inject.Inject;
+
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 @RunWith(JUnit4.class)
 public class BasicDependencyResolverTest {
@@ -50,6 +59,12 @@ public class BasicDependencyResolverTest {
     interface NonService {
     }
 
+    public static class Handler {
+        @Inject Parser parser;
+    }
+    public static class Parser {
+    }
+
 
     @Test
     public void testResolve() throws Exception {
@@ -75,6 +90,78 @@ public class BasicDependencyResolverTest {
         assertThat(nonService, nullValue());
     }
 
+    @Test
+    public void testResolveCached() throws Exception {
+        BindingCache cache = new BindingCache.Builder().maximumSize(1).build();
+        BasicDependencyResolver resolver =
+                new BasicDependencyResolver.Builder()
+                        .register(Service1.class, Service1Impl.class, cache)
+                        .register(Service2.class, new Service2ImplProvider(), cache)
+                        .build();
+        Service1 service1 = resolver.resolve(Service1.class);
+        assertThat(service1, instanceOf(Service1Impl.class));
+        assertThat(resolver.resolve(Service1.class), sameInstance(service1));
+
+        Service2 service2 = resolver.resolve(Service2.class);
+        assertThat(service2, instanceOf(Service2Impl.class));
+        assertThat(resolver.resolve(Service2.class), sameInstance(service2));
+
+        // Service1 was evicted when Service2 was cached
+        assertThat(resolver.resolve(Service1.class), not(sameInstance(service1)));
+        assertThat(cache.stats().hits(), equalTo(2L));
+        assertThat(cache.stats().misses(), equalTo(3L));
+        assertThat(cache.stats().evictions(), equalTo(2L));
+    }
+
+    @Test
+    public void testResolveCachedWithContainer() throws Exception {
+        BasicDependencyResolver resolver =
+                new BasicDependencyResolver.Builder()
+                        .register(Handler.class, Handler.class, new BindingCache.Builder().build())
+                        .register(Parser.class)
+                        .build();
+        IoC container = IoC.create(resolver);
+
+        // The cached handler is injected once, so its prototype parser is never replaced
+        Handler handler = container.resolve(Handler.class);
+        Parser parser = handler.parser;
+        assertThat(parser, notNullValue());
+        assertThat(container.resolve(Handler.class), sameInstance(handler));
+        assertThat(handler.parser, sameInstance(parser));
+
+        Factory<Handler> handlers = container.factoryFor(Handler.class);
+        assertThat(handlers.get(), sameInstance(handler));
+        assertThat(handlers.get(), sameInstance(handler));
+        assertThat(container.resolveMany(Handler.class, 2), contains(handler, handler));
+        assertThat(handler.parser, sameInstance(parser));
+        container.close();
+    }
+
+    @Test
+    public void testResolveQualified() throws Exception {
+        BasicDependencyResolver resolver =
+                new BasicDependencyResolver.Builder()
+                        .register(Key.of(Service1.class, "impl"), Service1Impl.class)
+                        .register(Key.of(Service2.class, "provided"), new Service2ImplProvider())
+                        .build();
+        assertThat(resolver.resolve(Key.of(Service1.class, "impl")), instanceOf(Service1Impl.class));
+        assertThat(resolver.resolve(Key.of(Service2.class, "provided")), instanceOf(Service2Impl.class));
+        assertThat(resolver.resolve(Key.of(Service1.class, "other")), nullValue());
+        assertThat(resolver.resolve(Service1.class), nullValue());
+    }
+
+    @Test
+    public void testKnownTypes() throws Exception {
+        BasicDependencyResolver resolver =
+                new BasicDependencyResolver.Builder()
+                        .register(Service1.class, Service1Impl.class)
+                        .register(Service2.class, new Service2ImplProvider())
+                        .register(Service3.class, Service3Impl.class, new BindingCache.Builder().build())
+                        .build();
+        assertThat(resolver.knownTypes(), containsInAnyOrder(
+                Service1.class, Service1Impl.class, Service2.class, Service3.class, Service3Impl.class));
+    }
+
     @Test(expected = NonInstantiableClassException.class)
     public void testResolveNonInstantiable() throws Exception {
         new BasicDependencyResolver.Builder()
@@ -0,0 +1,87 @@
+package com.ruesga.siocc.resolvers;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+@RunWith(JUnit4.class)
+public class BindingCacheTest {
+    public static class A {
+    }
+
+    public static class B {
+    }
+
+    public static class C {
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        BindingCache cache = new BindingCache.Builder().maximumSize(2).build();
+        A a = cache.get(A.class, A::new);
+        B b = cache.get(B.class, B::new);
+
+        // Touch A, so B becomes the least recently used entry
+        assertThat(cache.get(A.class, A::new), sameInstance(a));
+        cache.get(C.class, C::new);
+
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.get(A.class, A::new), sameInstance(a));
+        assertThat(cache.get(B.class, B::new), not(sameInstance(b)));
+
+        BindingCache.Stats stats = cache.stats();
+        assertThat(stats.hits(), equalTo(2L));
+        assertThat(stats.misses(), equalTo(4L));
+        assertThat(stats.evictions(), equalTo(2L));
+    }
+
+    @Test
+    public void testExpireAfterAccess() {
+        AtomicLong now = new AtomicLong();
+        BindingCache cache = new BindingCache.Builder()
+                .expireAfterAccess(10, TimeUnit.SECONDS)
+                .ticker(now::get)
+                .build();
+        A a = cache.get(A.class, A::new);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        assertThat(cache.get(A.class, A::new), sameInstance(a));
+
+        // The previous access renewed the entry
+        now.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        assertThat(cache.get(A.class, A::new), sameInstance(a));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertThat(cache.get(A.class, A::new), not(sameInstance(a)));
+        assertThat(cache.stats().evictions(), equalTo(1L));
+    }
+
+    @Test
+    public void testSoftReferences() {
+        BindingCache cache = new BindingCache.Builder()
+                .references(BindingCache.ReferenceType.SOFT)
+                .build();
+        A a = cache.get(A.class, A::new);
+        assertThat(cache.get(A.class, A::new), sameInstance(a));
+        assertThat(cache.stats().hits(), equalTo(1L));
+    }
+
+    @Test
+    public void testInvalidate() {
+        BindingCache cache = new BindingCache.Builder().build();
+        A a = cache.get(A.class, A::new);
+        cache.invalidate(A.class);
+        assertThat(cache.get(A.class, A::new), not(sameInstance(a)));
+
+        cache.invalidateAll();
+        assertThat(cache.size(), equalTo(0));
+    }
+}
@@ -0,0 +1,327 @@
+package com.ruesga.siocc.resolvers;
+
+import com.ruesga.siocc.Key;
+import com.ruesga.siocc.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link DependencyResolver} implementation that groups the bindings of an application into modules which
+ * are activated on first use.
+ * <p>
+ * Every module declares the types it exports and a factory of the {@link DependencyResolver} holding its
+ * bindings (usually built with a <code>BasicDependencyResolver</code> or <code>AnnotationDependencyResolver</code>
+ * builder). The factory isn't called until one of the exported types is resolved, so the bindings of unused
+ * modules are never registered, scanned or loaded. Once active, a module also resolves its non exported types, like the
+ * dependencies of its implementations. Types that may be resolved before their module is active must be
+ * exported.
+ * <p>
+ * In order to create a new {@link ModuleDependencyResolver} reference, developers must use
+ * the {@link Builder} class.
+ * <pre>
+ *     ModuleDependencyResolver resolver = new ModuleDependencyResolver.Builder()
+ *             .module("batch", () -&gt; new AnnotationDependencyResolver.Builder()
+ *                             .scan("com.example.batch")
+ *                             .build(),
+ *                     JobScheduler.class)
+ *             .module("api", () -&gt; new BasicDependencyResolver.Builder()
+ *                             .register(Endpoint.class, EndpointImpl.class)
+ *                             .register(Repository.class, RepositoryImpl.class)
+ *                             .build(),
+ *                     Endpoint.class)
+ *             .build();
+ * </pre>
+ * The factories are referenced by lambdas so the implementation classes they mention aren't loaded until
+ * they are called.
+ *
+ * @see DependencyResolver
+ * @see Builder
+ */
+public class ModuleDependencyResolver implements DependencyResolver {
+    private final static Logger logger = LoggerFactory.getLogger(ModuleDependencyResolver.class);
+
+    /**
+     * A factory of the resolver of a module.
+     */
+    @FunctionalInterface
+    public interface ModuleFactory {
+        /**
+         * Creates the resolver holding the bindings of the module.
+         *
+         * @return the resolver.
+         * @throws DependencyResolutionException if the bindings of the module couldn't be registered.
+         */
+        DependencyResolver create() throws DependencyResolutionException;
+    }
+
+    /**
+     * A builder for creating {@link ModuleDependencyResolver} classes.
+     */
+    public static class Builder {
+        private ModuleDependencyResolver resolver;
+
+        /**
+         * Creates a new {@link ModuleDependencyResolver.Builder} reference.
+         */
+        public Builder() {
+            this.resolver = new ModuleDependencyResolver();
+        }
+
+        /**
+         * Registers a module. Modules are looked up in registration order.
+         *
+         * @param name the name of the module, used in logs and traces.
+         * @param factory the factory of the resolver of the module. It's called once, the first time one of
+         *                the exported types is resolved.
+         * @param exports the types that activate the module.
+         * @return the own builder's reference.
+         */
+        public Builder module(String name, ModuleFactory factory, Class<?>... exports) {
+            if (name == null || factory == null) {
+                throw new IllegalArgumentException("name and factory are required");
+            }
+            if (exports.length == 0) {
+                throw new IllegalArgumentException("Module '" + name + "' doesn't export any type");
+            }
+            Module module = new Module(name, factory);
+            this.resolver.modules.add(module);
+            for (Class<?> type : exports) {
+                this.resolver.exporters.computeIfAbsent(type, k -> new ArrayList<>()).add(module);
+            }
+            return this;
+        }
+
+        /**
+         * Sets the tracer used to record the activation spans. Tracing is disabled by default.
+         *
+         * @param tracer the tracer to use.
+         * @return the own builder's reference.
+         * @see Tracer
+         */
+        public Builder tracer(Tracer tracer) {
+            this.resolver.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * Creates and returns a new {@link ModuleDependencyResolver} reference.
+         *
+         * @return a new {@link ModuleDependencyResolver} reference.
+         */
+        public ModuleDependencyResolver build() {
+            return resolver;
+        }
+    }
+
+    private static class Module {
+        private final String name;
+        private final ModuleFactory factory;
+        private volatile DependencyResolver resolver;
+
+        private Module(String name, ModuleFactory factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        private DependencyResolver activate(Tracer tracer) {
+            DependencyResolver r = resolver;
+            if (r == null) {
+                synchronized (this) {
+                    r = resolver;
+                    if (r == null) {
+                        long start = System.nanoTime();
+                        try (Tracer.Span ignored = tracer.begin("activate", name)) {
+                            r = factory.create();
+                        } catch (DependencyResolutionException ex) {
+                            // Not active. It will be retried on the next resolution
+                            logger.warn("Can't activate module '{}'", name, ex);
+                            return null;
+                        }
+                        if (r == null) {
+                            throw new IllegalStateException("The factory of module '" + name + "' returned null");
+                        }
+                        logger.debug("Activated module '{}' in {} ms", name, (System.nanoTime() - start) / 1000000L);
+                        resolver = r;
+                    }
+                }
+            }
+            return r;
+        }
+    }
+
+    /**
+     * The module that answered the last lookup of a thread.
+     */
+    private static class Answer {
+        private Key<?> key;
+        private Module module;
+    }
+
+    private final List<Module> modules = new ArrayList<>();
+    // The modules exporting every type
+    private final Map<Class<?>, List<Module>> exporters = new HashMap<>();
+    // The module that last resolved every key
+    private final ConcurrentMap<Key<?>, Module> routes = new ConcurrentHashMap<>();
+    // The container asks about the instance right after resolving it, in the same thread, while the route
+    // may have been changed by other threads in the meantime
+    private final ThreadLocal<Answer> answers = ThreadLocal.withInitial(Answer::new);
+    private Tracer tracer = Tracer.DISABLED;
+
+    private ModuleDependencyResolver() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T resolve(Class<T> type) {
+        return resolve(Key.of(type));
+    }
+
+    /**
+     * Resolves the passed binding key with the modules exporting its type (activating them if needed), and
+     * then with the rest of the active modules.
+     *
+     * @param key the binding key.
+     * @param <T> the class type of the desired type.
+     * @return an instance of the resolved type or <code>null</code> if not resolved.
+     */
+    @Override
+    public <T> T resolve(Key<T> key) {
+        try {
+            return lookup(key, null);
+        } catch (DependencyResolutionException ex) {
+            // Only thrown by injectors
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Resolves the passed binding key as {@link #resolve(Key)} does, passing the injector to the resolver
+     * of the module.
+     *
+     * @param key the binding key.
+     * @param injector the injector of the container.
+     * @param <T> the class type of the desired type.
+     * @return an instance of the resolved type or <code>null</code> if not resolved.
+     * @throws DependencyResolutionException if the resolver of the module failed to inject the instance.
+     */
+    @Override
+    public <T> T resolve(Key<T> key, MembersInjector injector) throws DependencyResolutionException {
+        return lookup(key, injector);
+    }
+
+    /**
+     * Returns whether the resolver of the module that resolved the key injects its instances. The module is
+     * the one that answered the last resolution of the key in the calling thread, or else the last one that
+     * resolved the key in any thread.
+     *
+     * @param key the binding key.
+     * @return <code>true</code> if the module that resolved the key returns fully wired instances.
+     */
+    @Override
+    public boolean injectsMembers(Key<?> key) {
+        Module module = answered(key);
+        return module != null && module.resolver.injectsMembers(key);
+    }
+
+    /**
+     * Returns the implementation class of the key in the module that resolved it (see
+     * {@link #injectsMembers(Key)}).
+     *
+     * @param key the binding key.
+     * @return the implementation class, or <code>null</code> if the key wasn't resolved or the module doesn't
+     *         just instantiate it.
+     */
+    @Override
+    public Class<?> implementationOf(Key<?> key) {
+        Module module = answered(key);
+        return module != null ? module.resolver.implementationOf(key) : null;
+    }
+
+    private Module answered(Key<?> key) {
+        Answer answer = answers.get();
+        return key.equals(answer.key) ? answer.module : routes.get(key);
+    }
+
+    private <T> T lookup(Key<T> key, MembersInjector injector) throws DependencyResolutionException {
+        Module route = routes.get(key);
+        if (route != null) {
+            T instance = resolve(route.resolver, key, injector);
+            if (instance != null) {
+                return answer(key, route, instance);
+            }
+        }
+
+        List<Module> candidates = exporters.getOrDefault(key.type(), Collections.emptyList());
+        for (Module module : candidates) {
+            DependencyResolver r = module.activate(tracer);
+            T instance = r != null ? resolve(r, key, injector) : null;
+            if (instance != null) {
+                routes.put(key, module);
+                return answer(key, module, instance);
+            }
+        }
+        for (Module module : modules) {
+            DependencyResolver r = module.resolver;
+            if (r != null && !candidates.contains(module)) {
+                T instance = resolve(r, key, injector);
+                if (instance != null) {
+                    routes.put(key, module);
+                    return answer(key, module, instance);
+                }
+            }
+        }
+        return answer(key, null, null);
+    }
+
+    private <T> T answer(Key<T> key, Module module, T instance) {
+        // Recorded once resolved, so it isn't overwritten by the lookups of the dependencies the module
+        // resolved meanwhile
+        Answer answer = answers.get();
+        answer.key = key;
+        answer.module = module;
+        return instance;
+    }
+
+    private static <T> T resolve(DependencyResolver resolver, Key<T> key, MembersInjector injector)
+            throws DependencyResolutionException {
+        return injector != null ? resolver.resolve(key, injector) : resolver.resolve(key);
+    }
+
+    /**
+     * Returns the names of the modules activated so far.
+     *
+     * @return the active modules, in registration order.
+     */
+    public Set<String> activeModules() {
+        Set<String> active = new LinkedHashSet<>();
+        for (Module module : modules) {
+            if (module.resolver != null) {
+                active.add(module.name);
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Returns the exported types of all the modules. The modules aren't activated, so preloading them
+     * doesn't load their implementations.
+     *
+     * @return the known types.
+     */
+    @Override
+    public Set<Class<?>> knownTypes() {
+        return Collections.unmodifiableSet(exporters.keySet());
+    }
+}
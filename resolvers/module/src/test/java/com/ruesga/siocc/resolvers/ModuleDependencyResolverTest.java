@@ -0,0 +1,185 @@
+package com.ruesga.siocc.resolvers;
+
+import com.ruesga.siocc.IoC;
+import com.ruesga.siocc.Key;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.inject.Inject;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+@RunWith(JUnit4.class)
+public class ModuleDependencyResolverTest {
+
+    public interface Endpoint {
+    }
+
+    public static class EndpointImpl implements Endpoint {
+        @Inject
+        Repository repository;
+    }
+
+    public static class Repository {
+    }
+
+    public interface Job {
+    }
+
+    public static class JobImpl implements Job {
+    }
+
+    public static class OtherJobImpl implements Job {
+    }
+
+    private final AtomicInteger apiActivations = new AtomicInteger();
+    private final AtomicInteger batchActivations = new AtomicInteger();
+
+    private ModuleDependencyResolver createResolver() {
+        return new ModuleDependencyResolver.Builder()
+                .module("api", () -> {
+                    apiActivations.incrementAndGet();
+                    return new BasicDependencyResolver.Builder()
+                            .register(Endpoint.class, EndpointImpl.class)
+                            .register(Repository.class)
+                            .build();
+                }, Endpoint.class)
+                .module("batch", () -> {
+                    batchActivations.incrementAndGet();
+                    return new BasicDependencyResolver.Builder()
+                            .register(Job.class, JobImpl.class)
+                            .register(Key.of(Job.class, "other"), OtherJobImpl.class)
+                            .build();
+                }, Job.class)
+                .build();
+    }
+
+    @Test
+    public void testLazyActivation() {
+        ModuleDependencyResolver resolver = createResolver();
+        assertThat(resolver.activeModules(), empty());
+        assertThat(resolver.knownTypes(), containsInAnyOrder(Endpoint.class, Job.class));
+
+        // Non exported types don't activate modules
+        assertThat(resolver.resolve(Repository.class), nullValue());
+        assertThat(resolver.activeModules(), empty());
+
+        assertThat(resolver.resolve(Job.class), instanceOf(JobImpl.class));
+        assertThat(resolver.resolve(Job.class), instanceOf(JobImpl.class));
+        assertThat(resolver.resolve(Key.of(Job.class, "other")), instanceOf(OtherJobImpl.class));
+        assertThat(resolver.activeModules(), contains("batch"));
+        assertThat(batchActivations.get(), equalTo(1));
+        assertThat(apiActivations.get(), equalTo(0));
+    }
+
+    @Test
+    public void testNonExportedTypes() throws Exception {
+        ModuleDependencyResolver resolver = createResolver();
+        IoC container = IoC.create(resolver);
+
+        // The repository is resolved by the module activated by the endpoint
+        EndpointImpl endpoint = (EndpointImpl) container.resolve(Endpoint.class);
+        assertThat(endpoint.repository, notNullValue());
+        assertThat(resolver.resolve(Repository.class), notNullValue());
+        assertThat(resolver.activeModules(), contains("api"));
+        container.close();
+    }
+
+    @Test
+    public void testCachedBindings() throws Exception {
+        ModuleDependencyResolver resolver = new ModuleDependencyResolver.Builder()
+                .module("api", () -> new BasicDependencyResolver.Builder()
+                        .register(Endpoint.class, EndpointImpl.class, new BindingCache.Builder().build())
+                        .register(Repository.class)
+                        .build(), Endpoint.class)
+                .build();
+        IoC container = IoC.create(resolver);
+
+        // The module injects the cached endpoint once, so the container doesn't replace its repository
+        EndpointImpl endpoint = (EndpointImpl) container.resolve(Endpoint.class);
+        Repository repository = endpoint.repository;
+        assertThat(repository, notNullValue());
+        assertThat(resolver.injectsMembers(Key.of(Endpoint.class)), equalTo(true));
+        assertThat(container.resolve(Endpoint.class), sameInstance(endpoint));
+        assertThat(endpoint.repository, sameInstance(repository));
+        container.close();
+    }
+
+    @Test
+    public void testAnsweringModule() throws Exception {
+        // Both modules bind the non exported repository. The first one only while enabled, with wired instances
+        AtomicBoolean enabled = new AtomicBoolean(true);
+        ModuleDependencyResolver resolver = new ModuleDependencyResolver.Builder()
+                .module("wired", () -> new DependencyResolver() {
+                    @Override
+                    public <T> T resolve(Class<T> type) {
+                        return enabled.get() && type == Repository.class ? type.cast(new Repository()) : null;
+                    }
+
+                    @Override
+                    public boolean injectsMembers(Key<?> key) {
+                        return true;
+                    }
+                }, Endpoint.class)
+                .module("plain", () -> new BasicDependencyResolver.Builder()
+                        .register(Repository.class)
+                        .build(), Job.class)
+                .build();
+        resolver.resolve(Endpoint.class);
+        resolver.resolve(Job.class);
+        Key<Repository> key = Key.of(Repository.class);
+        assertThat(resolver.resolve(key), notNullValue());
+
+        // Other thread reroutes the repository to the other module
+        enabled.set(false);
+        AtomicReference<Object[]> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> other.set(new Object[]{
+                resolver.resolve(key), resolver.injectsMembers(key), resolver.implementationOf(key)}));
+        thread.start();
+        thread.join();
+        assertThat(other.get()[0], notNullValue());
+        assertThat(other.get()[1], equalTo(false));
+        assertThat(other.get()[2], equalTo(Repository.class));
+
+        // But this thread is still answered about the instance it got
+        assertThat(resolver.injectsMembers(key), equalTo(true));
+        assertThat(resolver.implementationOf(key), nullValue());
+    }
+
+    @Test
+    public void testFailedActivation() {
+        AtomicInteger attempts = new AtomicInteger();
+        ModuleDependencyResolver resolver = new ModuleDependencyResolver.Builder()
+                .module("flaky", () -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new NonInstantiableClassException(Job.class);
+                    }
+                    return new BasicDependencyResolver.Builder().register(Job.class, JobImpl.class).build();
+                }, Job.class)
+                .build();
+        assertThat(resolver.resolve(Job.class), nullValue());
+        assertThat(resolver.activeModules(), empty());
+
+        // The activation is retried
+        assertThat(resolver.resolve(Job.class), instanceOf(JobImpl.class));
+        assertThat(resolver.activeModules(), contains("flaky"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoExports() {
+        new ModuleDependencyResolver.Builder()
+                .module("empty", () -> new BasicDependencyResolver.Builder().build());
+    }
+}
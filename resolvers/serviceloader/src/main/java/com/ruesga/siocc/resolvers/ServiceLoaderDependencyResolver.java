@@ -0,0 +1,211 @@
+package com.ruesga.siocc.resolvers;
+
+import com.ruesga.siocc.ClassMetadata;
+import com.ruesga.siocc.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A {@link DependencyResolver} implementation that resolves the providers of service interfaces declared
+ * in <code>META-INF/services</code> entries, through {@link ServiceLoader}.
+ * <p>
+ * Unlike {@link AnnotationDependencyResolver}, this resolver doesn't scan the classpath: only the entries of the
+ * registered services are read, so the time needed to build it doesn't depend on the size of the classpath.
+ * Providers are indexed once by service interface (and by their own class) when the resolver is built, and
+ * every call to {@link #resolve(Class)} creates a new instance of the first provider through its cached
+ * public empty constructor.
+ * <p>
+ * On Java 9 and later, the providers are indexed by their type ({@code ServiceLoader.Provider.type()}), without
+ * instantiating them. On Java 8, {@link ServiceLoader} can't tell the class of a provider without creating
+ * it, so building the resolver creates (and discards) one instance of every provider.
+ * <p>
+ * In order to create a new {@link ServiceLoaderDependencyResolver} reference, developers must use
+ * the {@link Builder} class.
+ * <pre>
+ *     ServiceLoaderDependencyResolver resolver =
+ *                 new ServiceLoaderDependencyResolver.Builder()
+ *                         .load(Service1.class, Service2.class)
+ *                         .build();
+ * </pre>
+ *
+ * @see DependencyResolver
+ * @see Builder
+ * @see ServiceLoader
+ */
+public class ServiceLoaderDependencyResolver implements DependencyResolver {
+    private final static Logger logger = LoggerFactory.getLogger(ServiceLoaderDependencyResolver.class);
+
+    /**
+     * A builder for creating {@link ServiceLoaderDependencyResolver} classes.
+     */
+    public static class Builder {
+        private ServiceLoaderDependencyResolver resolver;
+        private final Set<Class<?>> services = new LinkedHashSet<>();
+        private ClassLoader classLoader;
+
+        /**
+         * Creates a new {@link ServiceLoaderDependencyResolver.Builder} reference.
+         */
+        public Builder() {
+            this.resolver = new ServiceLoaderDependencyResolver();
+        }
+
+        /**
+         * Registers the service interfaces whose providers are loaded.
+         *
+         * @param services the service interfaces.
+         * @return the own builder's reference.
+         */
+        public Builder load(Class<?>... services) {
+            Collections.addAll(this.services, services);
+            return this;
+        }
+
+        /**
+         * Sets the class loader used to load the providers. By default, the context class loader is used.
+         *
+         * @param classLoader the class loader.
+         * @return the own builder's reference.
+         */
+        public Builder classLoader(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+            return this;
+        }
+
+        /**
+         * Sets the tracer used to record the loading and instantiation spans. Tracing is disabled by default.
+         *
+         * @param tracer the tracer to use.
+         * @return the own builder's reference.
+         * @see Tracer
+         */
+        public Builder tracer(Tracer tracer) {
+            this.resolver.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * Creates and returns a new {@link ServiceLoaderDependencyResolver} reference.
+         *
+         * @return a new {@link ServiceLoaderDependencyResolver} reference.
+         */
+        public ServiceLoaderDependencyResolver build() {
+            ClassLoader cl = classLoader != null ? classLoader : Thread.currentThread().getContextClassLoader();
+            for (Class<?> service : services) {
+                try (Tracer.Span ignored = resolver.tracer.begin("scan", service.getName())) {
+                    List<Class<?>> providers = resolver.index.computeIfAbsent(service, k -> new ArrayList<>());
+                    Iterator<?> it = providers(ServiceLoader.load(service, cl));
+                    while (it.hasNext()) {
+                        try {
+                            Class<?> provider = typeOf(it.next());
+                            providers.add(provider);
+                            // A provider of several services is only indexed once by its own type
+                            List<Class<?>> self = resolver.index.computeIfAbsent(provider, k -> new ArrayList<>());
+                            if (!self.contains(provider)) {
+                                self.add(provider);
+                            }
+                        } catch (ServiceConfigurationError e) {
+                            logger.warn("Can't load a provider of service '{}'", service.getName(), e);
+                        }
+                    }
+                }
+            }
+            return resolver;
+        }
+    }
+
+    // ServiceLoader.stream() and ServiceLoader.Provider.type(), only available since Java 9
+    private static final Method STREAM;
+    private static final Method TYPE;
+
+    static {
+        Method stream = null;
+        Method type = null;
+        try {
+            stream = ServiceLoader.class.getMethod("stream");
+            type = Class.forName("java.util.ServiceLoader$Provider").getMethod("type");
+        } catch (ReflectiveOperationException e) {
+            // Java 8. Providers are instantiated to know their type
+        }
+        STREAM = stream;
+        TYPE = type;
+    }
+
+    private final Map<Class<?>, List<Class<?>>> index = new HashMap<>();
+    private Tracer tracer = Tracer.DISABLED;
+
+    private ServiceLoaderDependencyResolver() {
+    }
+
+    private static Iterator<?> providers(ServiceLoader<?> loader) {
+        if (STREAM != null) {
+            try {
+                return ((Stream<?>) STREAM.invoke(loader)).iterator();
+            } catch (ReflectiveOperationException e) {
+                logger.debug("Can't stream the providers. Instantiating them instead", e);
+            }
+        }
+        return loader.iterator();
+    }
+
+    private static Class<?> typeOf(Object provider) {
+        if (TYPE != null && TYPE.getDeclaringClass().isInstance(provider)) {
+            try {
+                return (Class<?>) TYPE.invoke(provider);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof ServiceConfigurationError) {
+                    throw (ServiceConfigurationError) e.getCause();
+                }
+                throw new ServiceConfigurationError(e.getCause().getMessage(), e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new ServiceConfigurationError(e.getMessage(), e);
+            }
+        }
+        return provider.getClass();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T resolve(Class<T> type) {
+        List<Class<?>> candidates = index.get(type);
+        if (candidates == null) {
+            return null;
+        }
+        for (Class<?> c : candidates) {
+            try (Tracer.Span ignored = tracer.begin("instantiate", c.getName())) {
+                return ClassMetadata.of(c).newInstance();
+            } catch (ReflectiveOperationException ex) {
+                logger.warn("Can't create a new instance of type '{}' with implementation '{}'. " +
+                                "Does it have a public empty constructor?",
+                        type.getName(), c.getName());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the loaded service interfaces and their providers.
+     *
+     * @return the known types.
+     */
+    @Override
+    public Set<Class<?>> knownTypes() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+}
@@ -0,0 +1,76 @@
+package com.ruesga.siocc.resolvers;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assume.assumeThat;
+
+@RunWith(JUnit4.class)
+public class ServiceLoaderDependencyResolverTest {
+
+    public interface Service {
+    }
+
+    public static class ServiceImpl implements Service {
+        private static final AtomicInteger created = new AtomicInteger();
+
+        public ServiceImpl() {
+            created.incrementAndGet();
+        }
+    }
+
+    public interface NonService {
+    }
+
+    @Test
+    public void testResolve() {
+        ServiceLoaderDependencyResolver resolver =
+                new ServiceLoaderDependencyResolver.Builder()
+                        .load(Service.class, NonService.class)
+                        .build();
+        Service x = resolver.resolve(Service.class);
+        assertThat(x, notNullValue());
+        assertThat(x, instanceOf(ServiceImpl.class));
+        assertThat(resolver.resolve(Service.class), not(sameInstance(x)));
+
+        x = resolver.resolve(ServiceImpl.class);
+        assertThat(x, notNullValue());
+        assertThat(x, instanceOf(ServiceImpl.class));
+
+        NonService x1 = resolver.resolve(NonService.class);
+        assertThat(x1, nullValue());
+    }
+
+    @Test
+    public void testProvidersNotInstantiated() {
+        // ServiceLoader only exposes the provider types without instantiating them since Java 9
+        assumeThat(System.getProperty("java.specification.version"), not(startsWith("1.")));
+        ServiceImpl.created.set(0);
+        ServiceLoaderDependencyResolver resolver =
+                new ServiceLoaderDependencyResolver.Builder()
+                        .load(Service.class)
+                        .build();
+        assertThat(ServiceImpl.created.get(), equalTo(0));
+        assertThat(resolver.resolve(Service.class), instanceOf(ServiceImpl.class));
+        assertThat(ServiceImpl.created.get(), equalTo(1));
+    }
+
+    @Test
+    public void testResolveNotLoaded() {
+        ServiceLoaderDependencyResolver resolver =
+                new ServiceLoaderDependencyResolver.Builder()
+                        .build();
+        assertThat(resolver.resolve(Service.class), nullValue());
+    }
+}
@@ -0,0 +1,250 @@
+package com.ruesga.siocc.tools;
+
+import com.ruesga.siocc.resolvers.AnnotationDependencyResolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates an <a href="https://openjdk.java.net/jeps/310">AppCDS</a> class list from a container graph.
+ * <p>
+ * The generator launches a probe JVM ({@link GraphProbe}) that creates a container with an
+ * {@link AnnotationDependencyResolver}, resolves every root type and exits, while the JVM dumps every class it
+ * loaded (<code>-XX:DumpLoadedClassList</code>). So the list contains exactly the classes the startup
+ * touched, including those of the container and the JDK, in load order (superclasses and interfaces first).
+ * The dumped list is then filtered: comments, JVM specific directives and the classes of the probe itself are
+ * removed. The list can be used to dump a shared archive:
+ * <pre>
+ *     java -Xshare:dump -XX:SharedClassListFile=classes.lst -XX:SharedArchiveFile=app.jsa -cp app.jar
+ *     java -XX:SharedArchiveFile=app.jsa -cp app.jar com.example.Main
+ * </pre>
+ * The JVM only dumps classes defined by the built-in class loaders, since it can't archive classes of custom
+ * class loaders (nor dynamic proxies or lambdas) from a class list.
+ * <p>
+ * The probe runs on the same JVM as the generator, which must be Java 10 or later: older JVMs only dump the
+ * classes of the boot class loader, so the list wouldn't have any application class. The list records every
+ * class the probe loaded, so it may also have classes loaded incidentally (for example, the nested classes
+ * of an enclosing class read by reflection), depending on the JVM version.
+ * <p>
+ * In order to create a new {@link ClassListGenerator} reference, developers must use the {@link Builder} class.
+ * <pre>
+ *     List&lt;String&gt; classes = new ClassListGenerator.Builder()
+ *             .scan("com.example")
+ *             .roots(Service.class)
+ *             .build()
+ *             .generate();
+ * </pre>
+ * It can also be run from the command line (see {@link #main(String[])}).
+ */
+public class ClassListGenerator {
+    /**
+     * A builder for creating {@link ClassListGenerator} classes.
+     */
+    public static class Builder {
+        private ClassListGenerator generator;
+
+        /**
+         * Creates a new {@link ClassListGenerator.Builder} reference.
+         */
+        public Builder() {
+            this.generator = new ClassListGenerator();
+        }
+
+        /**
+         * Sets the packages scanned by the {@link AnnotationDependencyResolver} of the probe.
+         *
+         * @param packages the packages to scan.
+         * @return the own builder's reference.
+         */
+        public Builder scan(String... packages) {
+            this.generator.packages = Arrays.asList(packages);
+            return this;
+        }
+
+        /**
+         * Sets the types from which the graph is resolved.
+         *
+         * @param roots the root types.
+         * @return the own builder's reference.
+         */
+        public Builder roots(Class<?>... roots) {
+            this.generator.roots = Arrays.stream(roots).map(Class::getName).collect(Collectors.toList());
+            return this;
+        }
+
+        /**
+         * Sets the classpath of the probe JVM. Defaults to the classpath of the current JVM.
+         *
+         * @param classPath the classpath.
+         * @return the own builder's reference.
+         */
+        public Builder classPath(String classPath) {
+            this.generator.classPath = classPath;
+            return this;
+        }
+
+        /**
+         * Creates and returns a new {@link ClassListGenerator} reference.
+         *
+         * @return a new {@link ClassListGenerator} reference.
+         */
+        public ClassListGenerator build() {
+            if (generator.packages.isEmpty()) {
+                throw new IllegalArgumentException("scan is required");
+            }
+            return generator;
+        }
+    }
+
+    /**
+     * The minimum Java version whose <code>-XX:DumpLoadedClassList</code> includes application classes.
+     */
+    static final int MINIMUM_JAVA_VERSION = 10;
+
+    // The classes of the probe, that aren't part of the application
+    private static final Set<String> PROBE_CLASSES = new HashSet<>(Arrays.asList(
+            GraphProbe.class.getName().replace('.', '/'), GraphArguments.class.getName().replace('.', '/')));
+
+    private List<String> packages = Collections.emptyList();
+    private List<String> roots = Collections.emptyList();
+    private String classPath = System.getProperty("java.class.path");
+
+    private ClassListGenerator() {
+    }
+
+    /**
+     * Resolves the graph in a probe JVM and returns the classes it loaded, in the class list format (the binary
+     * names with slashes, e.g. <code>com/example/Service</code>), superclasses and interfaces first.
+     *
+     * @return the class list.
+     * @throws IOException if the probe failed or the list couldn't be read.
+     * @throws InterruptedException if interrupted while waiting for the probe.
+     * @throws UnsupportedOperationException if the JVM is older than Java 10.
+     */
+    public List<String> generate() throws IOException, InterruptedException {
+        // The probe is launched with the java binary of this JVM
+        int version = javaVersion();
+        if (version < MINIMUM_JAVA_VERSION) {
+            throw new UnsupportedOperationException("Class lists with application classes need Java "
+                    + MINIMUM_JAVA_VERSION + " or later, but the probe JVM is Java " + version);
+        }
+        Path dir = Files.createTempDirectory("siocc-classlist");
+        try {
+            File dumped = dir.resolve("classes.lst").toFile();
+            File log = dir.resolve("probe.log").toFile();
+            List<String> args = Arrays.asList("--scan=" + String.join(",", packages),
+                    "--roots=" + String.join(",", roots));
+            int status = GraphProbe.launch(Collections.singletonList("-XX:DumpLoadedClassList=" + dumped.getPath()),
+                    classPath, args, log);
+            if (status != 0 || !dumped.isFile()) {
+                throw new IOException("The probe failed with status " + status + ":\n"
+                        + new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+            }
+            return filter(Files.readAllLines(dumped.toPath(), StandardCharsets.UTF_8));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Resolves the graph in a probe JVM and writes the class list, one class per line.
+     *
+     * @param writer the writer where to write the list.
+     * @throws IOException if the probe failed or the list couldn't be written.
+     * @throws InterruptedException if interrupted while waiting for the probe.
+     * @throws UnsupportedOperationException if the JVM is older than Java 10.
+     */
+    public void write(Writer writer) throws IOException, InterruptedException {
+        for (String c : generate()) {
+            writer.write(c);
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Returns the feature version of the running JVM (8 for <code>1.8</code>, 11 for <code>11</code>, ...).
+     */
+    static int javaVersion() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        return Integer.parseInt(version);
+    }
+
+    private static List<String> filter(List<String> dumped) {
+        Set<String> classes = new LinkedHashSet<>();
+        for (String line : dumped) {
+            line = line.trim();
+            // Skip comments and directives (@lambda-proxy, ...), which depend on the JVM version
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("@")) {
+                continue;
+            }
+            // Newer JVMs may append attributes (id: 1 super: 0 ...) to the class name
+            String name = line.split("\\s+", 2)[0];
+            if (!PROBE_CLASSES.contains(name)) {
+                classes.add(name);
+            }
+        }
+        return new ArrayList<>(classes);
+    }
+
+    private static void delete(Path path) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            // Children first
+            for (Path p : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /**
+     * Resolves the graph of an {@link AnnotationDependencyResolver} from the passed roots in a probe JVM, and
+     * writes its class list. Arguments are passed as <code>--name=value</code> pairs:
+     * <ul>
+     *     <li><code>scan</code>: comma-separated packages scanned by the resolver.</li>
+     *     <li><code>roots</code>: comma-separated root classes.</li>
+     *     <li><code>output</code>: the file where to write the list. Defaults to the standard output.</li>
+     * </ul>
+     *
+     * @param args the arguments.
+     * @throws Exception if the list couldn't be generated.
+     */
+    public static void main(String[] args) throws Exception {
+        GraphArguments graph = GraphArguments.parse(args);
+        ClassListGenerator generator = new ClassListGenerator.Builder()
+                .scan(graph.packages())
+                .roots(graph.roots())
+                .build();
+
+        String output = graph.option("output");
+        if (output == null) {
+            generator.write(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            return;
+        }
+        Path path = Paths.get(output);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            generator.write(writer);
+        }
+    }
+}
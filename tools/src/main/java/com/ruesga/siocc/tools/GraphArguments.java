@@ -0,0 +1,75 @@
+package com.ruesga.siocc.tools;
+
+import com.ruesga.siocc.IoC;
+import com.ruesga.siocc.resolvers.AnnotationDependencyResolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>--name=value</code> arguments of the command line tools, describing the container graph.
+ */
+class GraphArguments {
+    private final Map<String, String> options = new HashMap<>();
+
+    private GraphArguments() {
+    }
+
+    static GraphArguments parse(String[] args) {
+        GraphArguments arguments = new GraphArguments();
+        for (String arg : args) {
+            String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+            arguments.options.put(kv[0], kv.length > 1 ? kv[1] : "true");
+        }
+        return arguments;
+    }
+
+    String option(String name) {
+        return options.get(name);
+    }
+
+    String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Returns the passed options back as <code>--name=value</code> arguments, so they can be forwarded.
+     */
+    List<String> toArgs(String... names) {
+        List<String> args = new ArrayList<>();
+        for (String name : names) {
+            if (options.containsKey(name)) {
+                args.add("--" + name + "=" + options.get(name));
+            }
+        }
+        return args;
+    }
+
+    IoC createContainer() {
+        return IoC.create(new AnnotationDependencyResolver.Builder()
+                .scan(packages())
+                .build());
+    }
+
+    String[] packages() {
+        return required("scan").split(",");
+    }
+
+    Class<?>[] roots() throws ClassNotFoundException {
+        List<Class<?>> classes = new ArrayList<>();
+        for (String root : required("roots").split(",")) {
+            classes.add(Class.forName(root.trim()));
+        }
+        return classes.toArray(new Class<?>[0]);
+    }
+
+    private String required(String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("--" + name + " is required");
+        }
+        return value;
+    }
+}
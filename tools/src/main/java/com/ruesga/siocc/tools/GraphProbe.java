@@ -0,0 +1,56 @@
+package com.ruesga.siocc.tools;
+
+import com.ruesga.siocc.IoC;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The program launched in a new JVM by the tools: it creates the container and resolves the roots of the
+ * graph passed as arguments (see {@link ClassListGenerator#main(String[])}).
+ */
+public class GraphProbe {
+    private GraphProbe() {
+    }
+
+    /**
+     * Resolves the graph passed as arguments.
+     *
+     * @param args the graph arguments.
+     * @throws Exception if the graph couldn't be resolved.
+     */
+    public static void main(String[] args) throws Exception {
+        GraphArguments graph = GraphArguments.parse(args);
+        IoC container = graph.createContainer();
+        for (Class<?> root : graph.roots()) {
+            container.resolve(root);
+        }
+        container.close();
+    }
+
+    /**
+     * Launches a JVM with the current runtime, and waits for it to exit. The JVM runs the probe, unless
+     * <code>args</code> is null (e.g. to dump a shared archive).
+     *
+     * @return the exit status of the JVM.
+     */
+    static int launch(List<String> jvmArgs, String classPath, List<String> args, File log)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(classPath);
+        if (args != null) {
+            command.add(GraphProbe.class.getName());
+            command.addAll(args);
+        }
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                .start()
+                .waitFor();
+    }
+}
@@ -0,0 +1,88 @@
+package com.ruesga.siocc.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the startup time of the container with and without an AppCDS archive.
+ * <p>
+ * The benchmark generates the class list of the graph with {@link ClassListGenerator}, dumps a shared archive
+ * from it, and then launches several JVMs that create the container and resolve the roots ({@link GraphProbe}),
+ * with and without the archive, reporting their wall-clock times. Application class data sharing requires
+ * a Java 10+ runtime, and the JVM only archives classes loaded from jars, so the classpath must not contain
+ * directories.
+ * Arguments are passed as <code>--name=value</code> pairs:
+ * <ul>
+ *     <li><code>scan</code> and <code>roots</code>: the graph (see {@link ClassListGenerator#main(String[])}).</li>
+ *     <li><code>runs</code>: the number of JVMs launched with and without the archive. Defaults to 10.</li>
+ *     <li><code>workDir</code>: the directory where the list, the archive and the JVM logs are written.</li>
+ * </ul>
+ */
+public class StartupBenchmark {
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the arguments.
+     * @throws Exception if the benchmark couldn't be run.
+     */
+    public static void main(String[] args) throws Exception {
+        GraphArguments graph = GraphArguments.parse(args);
+        int runs = Integer.parseInt(graph.option("runs", "10"));
+        if (runs <= 0) {
+            throw new IllegalArgumentException("runs must be greater than 0");
+        }
+        File workDir = new File(graph.option("workDir", "cds"));
+        if (!workDir.isDirectory() && !workDir.mkdirs()) {
+            throw new IOException("Can't create " + workDir);
+        }
+        File classList = new File(workDir, "classes.lst");
+        File archive = new File(workDir, "app.jsa");
+        File log = new File(workDir, "jvm.log");
+        List<String> graphArgs = graph.toArgs("scan", "roots");
+        String classPath = System.getProperty("java.class.path");
+
+        List<String> generate = new ArrayList<>(graphArgs);
+        generate.add("--output=" + classList.getPath());
+        ClassListGenerator.main(generate.toArray(new String[0]));
+
+        List<String> dump = Arrays.asList("-Xshare:dump",
+                "-XX:SharedClassListFile=" + classList.getPath(), "-XX:SharedArchiveFile=" + archive.getPath());
+        if (GraphProbe.launch(dump, classPath, null, log) != 0) {
+            throw new IllegalStateException("Can't dump the shared archive. See " + log);
+        }
+        System.out.printf("Dumped %s from %s%n", archive, classList);
+
+        // Interleave the runs, so both variants see the same system noise
+        long[] baseline = new long[runs];
+        long[] shared = new long[runs];
+        List<String> useArchive = Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + archive.getPath());
+        for (int i = 0; i < runs; i++) {
+            baseline[i] = measure(new ArrayList<>(), classPath, graphArgs, log);
+            shared[i] = measure(useArchive, classPath, graphArgs, log);
+        }
+        System.out.println(summary("without archive", baseline));
+        System.out.println(summary("with archive", shared));
+    }
+
+    private static long measure(List<String> jvmArgs, String classPath, List<String> args, File log)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        if (GraphProbe.launch(jvmArgs, classPath, args, log) != 0) {
+            throw new IllegalStateException("The probe failed. See " + log);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static String summary(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        return String.format(Locale.ROOT, "%s: mean=%.1f ms, median=%.1f ms, min=%.1f ms",
+                name, mean / 1e6d, sorted[sorted.length / 2] / 1e6d,
+                sorted[0] / 1e6d);
+    }
+}
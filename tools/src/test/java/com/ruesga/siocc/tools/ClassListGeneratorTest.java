@@ -0,0 +1,96 @@
+package com.ruesga.siocc.tools;
+
+import com.ruesga.siocc.IoC;
+import com.ruesga.siocc.resolvers.IoCDependency;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.inject.Inject;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assume.assumeThat;
+
+@RunWith(JUnit4.class)
+public class ClassListGeneratorTest {
+    public interface Service {
+    }
+
+    public static abstract class BaseService implements Service {
+        @Inject private Repository repository;
+    }
+
+    @IoCDependency
+    public static class ServiceImpl extends BaseService {
+        @Inject private Repository repository;
+    }
+
+    @IoCDependency
+    public static class Repository {
+    }
+
+    private static String nameOf(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    @Test
+    public void testGenerate() throws Exception {
+        assumeThat(ClassListGenerator.javaVersion(),
+                greaterThanOrEqualTo(ClassListGenerator.MINIMUM_JAVA_VERSION));
+        List<String> classes = new ClassListGenerator.Builder()
+                .scan(ClassListGeneratorTest.class.getPackage().getName())
+                .roots(Service.class)
+                .build()
+                .generate();
+
+        assertThat(classes, hasItems(nameOf(IoC.class), nameOf(Object.class),
+                nameOf(Service.class), nameOf(BaseService.class), nameOf(ServiceImpl.class),
+                nameOf(Repository.class)));
+        assertThat(classes, not(hasItems(nameOf(GraphProbe.class))));
+
+        // Supertypes are listed before their subclasses, and every class only once
+        assertThat(classes.indexOf(nameOf(Service.class)), lessThan(classes.indexOf(nameOf(BaseService.class))));
+        assertThat(classes.indexOf(nameOf(BaseService.class)),
+                lessThan(classes.indexOf(nameOf(ServiceImpl.class))));
+        assertThat(classes.stream().distinct().count(), equalTo((long) classes.size()));
+        assertThat(classes.stream().anyMatch(c -> c.startsWith("#") || c.startsWith("@")), equalTo(false));
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        assumeThat(ClassListGenerator.javaVersion(),
+                greaterThanOrEqualTo(ClassListGenerator.MINIMUM_JAVA_VERSION));
+        StringWriter writer = new StringWriter();
+        new ClassListGenerator.Builder()
+                .scan(ClassListGeneratorTest.class.getPackage().getName())
+                .roots(Repository.class)
+                .build()
+                .write(writer);
+        assertThat(writer.toString().contains(nameOf(Repository.class) + "\n"), equalTo(true));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnsupportedJava() throws Exception {
+        // Older JVMs don't dump the application classes
+        assumeThat(ClassListGenerator.javaVersion(), lessThan(ClassListGenerator.MINIMUM_JAVA_VERSION));
+        new ClassListGenerator.Builder()
+                .scan(ClassListGeneratorTest.class.getPackage().getName())
+                .roots(Repository.class)
+                .build()
+                .generate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testScanRequired() {
+        new ClassListGenerator.Builder()
+                .roots(Repository.class)
+                .build();
+    }
+}